@@ -7,7 +7,9 @@ import gherkin.formatter.model.Comment;
 import gherkin.formatter.model.DataTableRow;
 import gherkin.formatter.model.Row;
 import gherkin.lexer.Lexer;
+import gherkin.lexer.LexerFactory;
 import gherkin.lexer.Listener;
+import gherkin.lexer.TokenListener;
 import gherkin.util.Mapper;
 
 import java.io.InputStreamReader;
@@ -24,6 +26,8 @@ import java.util.Map;
 import java.util.Set;
 import java.util.SortedSet;
 import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import static gherkin.util.FixJava.join;
 import static gherkin.util.FixJava.map;
@@ -67,22 +71,43 @@ public class I18n {
         return keyword.replaceAll("[\\s',!]", "");
     }
 
+    private static final ConcurrentMap<String, I18n> INSTANCES = new ConcurrentHashMap<String, I18n>();
+
     public static List<I18n> getAll() {
         List<I18n> result = new ArrayList<I18n>();
 
         Set<String> isoCodes = new TreeSet<String>(I18N.keySet());
         for (String isoCode : isoCodes) {
-            result.add(new I18n(isoCode));
+            result.add(forIsoCode(isoCode));
         }
         return result;
     }
 
+    /**
+     * I18n instances are immutable, so there is no need to build more than one per language.
+     *
+     * @return the shared instance for the language.
+     */
+    public static I18n forIsoCode(String isoCode) {
+        I18n i18n = INSTANCES.get(isoCode);
+        if (i18n == null) {
+            I18n created = new I18n(isoCode);
+            i18n = INSTANCES.putIfAbsent(isoCode, created);
+            if (i18n == null) {
+                i18n = created;
+            }
+        }
+        return i18n;
+    }
+
     private final String isoCode;
+    private final String underscoredIsoCode;
     private final Locale locale;
     private final Map<String, List<String>> keywords;
 
     public I18n(String isoCode) {
         this.isoCode = isoCode;
+        this.underscoredIsoCode = isoCode.replaceAll("[\\s-]", "_").toLowerCase();
         this.locale = localeFor(this.isoCode);
         this.keywords = new HashMap<String, List<String>>();
 
@@ -109,21 +134,15 @@ public class I18n {
     }
 
     public String getUnderscoredIsoCode() {
-        return getIsoCode().replaceAll("[\\s-]", "_").toLowerCase();
+        return underscoredIsoCode;
     }
 
     public Lexer lexer(Listener listener) {
-        String qualifiedI18nLexerClassName = "gherkin.lexer." + capitalize(getUnderscoredIsoCode());
-        try {
-            Class<?> delegateClass = getClass().getClassLoader().loadClass(qualifiedI18nLexerClassName);
-            return (Lexer) delegateClass.getConstructor(Listener.class).newInstance(listener);
-        } catch (Exception e) {
-            throw new RuntimeException("Couldn't load lexer class: " + qualifiedI18nLexerClassName, e);
-        }
+        return LexerFactory.lexer(underscoredIsoCode, listener);
     }
 
-    private String capitalize(String s) {
-        return s.substring(0, 1).toUpperCase() + s.substring(1);
+    public Lexer lexer(TokenListener listener) {
+        return LexerFactory.lexer(underscoredIsoCode, listener);
     }
 
     public List<String> keywords(String key) {
@@ -1,10 +1,13 @@
 package gherkin;
 
-import gherkin.deps.com.google.gson.Gson;
+import gherkin.deps.com.google.gson.stream.JsonReader;
+import gherkin.deps.com.google.gson.stream.JsonToken;
 import gherkin.deps.net.iharder.Base64;
 import gherkin.formatter.Argument;
+import gherkin.formatter.EmbeddingStore;
 import gherkin.formatter.Formatter;
 import gherkin.formatter.Reporter;
+import gherkin.formatter.StoredEmbeddingReporter;
 import gherkin.formatter.model.Background;
 import gherkin.formatter.model.BasicStatement;
 import gherkin.formatter.model.Comment;
@@ -20,223 +23,474 @@ import gherkin.formatter.model.ScenarioOutline;
 import gherkin.formatter.model.Step;
 import gherkin.formatter.model.Tag;
 
+import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
 import java.io.StringReader;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
-import java.util.Map;
 
+/**
+ * Replays the features of a JSON report to a formatter and reporter. The JSON is read token by token
+ * into the model objects. The keys of an object can come in any order, so each feature is read
+ * before it is replayed, but a feature is replayed before the next one is read.
+ */
 public class JSONParser {
-    private final Gson gson = new Gson();
     private final Reporter reporter;
     private final Formatter formatter;
+    private final EmbeddingStore embeddingStore;
 
     public JSONParser(Reporter reporter, Formatter formatter) {
+        this(reporter, formatter, null);
+    }
+
+    /**
+     * @param embeddingStore loads the embeddings the report refers to by a "file". Each one is only
+     *                       loaded when it is replayed, and not at all if the reporter is a
+     *                       {@link StoredEmbeddingReporter} that takes it from the store as it is.
+     */
+    public JSONParser(Reporter reporter, Formatter formatter, EmbeddingStore embeddingStore) {
         this.reporter = reporter;
         this.formatter = formatter;
+        this.embeddingStore = embeddingStore;
     }
 
     public void parse(String src) {
-        List<Map> featureHashes = gson.fromJson(new StringReader(src), List.class);
-        for (Map o : featureHashes) {
-            formatter.uri(getString(o, "uri"));
-            new Feature(comments(o), tags(o), keyword(o), name(o), description(o), line(o), id(o)).replay(formatter);
-            for (Map featureElement : (List<Map>) getList(o, "elements")) {
-                featureElement(featureElement).replay(formatter);
-                for (Map hook : (List<Map>) getList(featureElement, "before")) {
-                    before(hook);
-                }
-                for (Map step : (List<Map>) getList(featureElement, "steps")) {
-                    step(step);
-                }
-                for (Map hook : (List<Map>) getList(featureElement, "after")) {
-                    after(hook);
-                }
-                for (Map eo : (List<Map>) getList(featureElement, "examples")) {
-                    new Examples(comments(eo), tags(eo), keyword(eo), name(eo), description(eo), line(eo), id(eo), examplesTableRows(getList(eo, "rows"))).replay(formatter);
-                }
-            }
-            formatter.eof();
-        }
+        parse(new StringReader(src));
     }
 
-    private BasicStatement featureElement(Map o) {
-        String type = (String) o.get("type");
-        if (type.equals("background")) {
-            return new Background(comments(o), keyword(o), name(o), description(o), line(o));
-        } else if (type.equals("scenario")) {
-            return new Scenario(comments(o), tags(o), keyword(o), name(o), description(o), line(o), id(o));
-        } else if (type.equals("scenario_outline")) {
-            return new ScenarioOutline(comments(o), tags(o), keyword(o), name(o), description(o), line(o), id(o));
-        } else {
-            return null;
+    /**
+     * Replays the features as they are read, so only one feature is held in memory at a time.
+     *
+     * @param src the JSON report. The reader is not closed.
+     */
+    public void parse(Reader src) {
+        JsonReader in = new JsonReader(src);
+        // Like Gson
+        in.setLenient(true);
+        try {
+            in.beginArray();
+            while (in.hasNext()) {
+                feature(in);
+            }
+            in.endArray();
+        } catch (IOException e) {
+            throw new RuntimeException("Couldn't parse the JSON", e);
         }
     }
 
-    private void before(Map o) {
-        Map m = (Map) o.get("match");
-        Match match = new Match(arguments(m), location(m));
-        Map r = (Map) o.get("result");
-        Result result = new Result(status(r), duration(r), errorMessage(r));
-        reporter.before(match, result);
+    /**
+     * Replays the features of a UTF-8 encoded JSON report file as they are read.
+     */
+    public void parse(File src) {
+        try {
+            Reader reader = new InputStreamReader(new FileInputStream(src), "UTF-8");
+            try {
+                parse(reader);
+            } finally {
+                reader.close();
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Couldn't read " + src.getPath(), e);
+        }
     }
 
-    private void after(Map o) {
-        Map m = (Map) o.get("match");
-        Match match = new Match(arguments(m), location(m));
-        Map r = (Map) o.get("result");
-        Result result = new Result(status(r), duration(r), errorMessage(r));
-        reporter.after(match, result);
+    private void feature(JsonReader in) throws IOException {
+        read(in).replay(true);
+        formatter.eof();
     }
 
-    private void step(Map o) {
-        List<DataTableRow> rows = null;
-        if (o.containsKey("rows")) {
-            rows = dataTableRows(getList(o, "rows"));
-        }
-
-        DocString docString = null;
-        if (o.containsKey("doc_string")) {
-            Map ds = (Map) o.get("doc_string");
-            docString = new DocString(getString(ds, "content_type"), getString(ds, "value"), getInt(ds, "line"));
-        }
-
-        Step step = new Step(comments(o), keyword(o), name(o), line(o), rows, docString);
-        step.replay(formatter);
-
-        if (o.containsKey("match")) {
-            Map m = (Map) o.get("match");
-            new Match(arguments(m), location(m)).replay(reporter);
-        }
-
-        if (o.containsKey("result")) {
-            Map r = (Map) o.get("result");
-            new Result(status(r), duration(r), errorMessage(r)).replay(reporter);
-        }
-
-        if (o.containsKey("embeddings")) {
-            List<Map> embeddings = (List<Map>) o.get("embeddings");
-            for (Map embedding : embeddings) {
-                try {
-                    reporter.embedding(getString(embedding, "mime_type"), Base64.decode(getString(embedding, "data")));
-                } catch (IOException ex) {
-                    throw new RuntimeException("Couldn't decode data", ex);
+    /**
+     * Reads the next feature of the report, without replaying anything, so it can be read on another
+     * thread than the one it is replayed on.
+     */
+    ParsedFeature read(JsonReader in) throws IOException {
+        ParsedFeature feature = new ParsedFeature();
+        in.beginObject();
+        while (in.hasNext()) {
+            String key = in.nextName();
+            if (key.equals("elements") && in.peek() != JsonToken.NULL) {
+                in.beginArray();
+                while (in.hasNext()) {
+                    feature.featureElements.add(featureElement(in));
                 }
+                in.endArray();
+            } else {
+                feature.statement.read(key, in);
             }
         }
-
-        if (o.containsKey("output")) {
-            List<String> output = (List<String>) o.get("output");
-            for (String text : output) {
-                reporter.write(text);
-            }
-        }
+        in.endObject();
+        return feature;
     }
 
-    private List<DataTableRow> dataTableRows(List o) {
-        List<DataTableRow> rows = new ArrayList<DataTableRow>(o.size());
-        for (Object e : o) {
-            Map row = (Map) e;
-            rows.add(new DataTableRow(comments(row), getList(row, "cells"), getInt(row, "line")));
+    private FeatureElement featureElement(JsonReader in) throws IOException {
+        FeatureElement featureElement = new FeatureElement();
+        in.beginObject();
+        while (in.hasNext()) {
+            String key = in.nextName();
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+            } else if (key.equals("before")) {
+                hooks(in, featureElement.before);
+            } else if (key.equals("after")) {
+                hooks(in, featureElement.after);
+            } else if (key.equals("steps")) {
+                in.beginArray();
+                while (in.hasNext()) {
+                    featureElement.steps.add(step(in));
+                }
+                in.endArray();
+            } else if (key.equals("examples")) {
+                in.beginArray();
+                while (in.hasNext()) {
+                    featureElement.examples.add(examples(in));
+                }
+                in.endArray();
+            } else {
+                featureElement.statement.read(key, in);
+            }
         }
-        return rows;
+        in.endObject();
+        return featureElement;
     }
 
-    private List<ExamplesTableRow> examplesTableRows(List o) {
-        List<ExamplesTableRow> rows = new ArrayList<ExamplesTableRow>(o.size());
-        for (Object e : o) {
-            Map row = (Map) e;
-            rows.add(new ExamplesTableRow(comments(row), getList(row, "cells"), getInt(row, "line"), id(row)));
+    private void hooks(JsonReader in, List<Hook> hooks) throws IOException {
+        in.beginArray();
+        while (in.hasNext()) {
+            Hook hook = new Hook();
+            in.beginObject();
+            while (in.hasNext()) {
+                String key = in.nextName();
+                if (key.equals("match")) {
+                    hook.match = match(in);
+                } else if (key.equals("result")) {
+                    hook.result = result(in);
+                } else {
+                    in.skipValue();
+                }
+            }
+            in.endObject();
+            hooks.add(hook);
         }
-        return rows;
+        in.endArray();
     }
 
-    private List<Comment> comments(Map o) {
-        List<Comment> comments = new ArrayList<Comment>();
-        if (o.containsKey("comments")) {
-            for (Object e : ((List) o.get("comments"))) {
-                Map map = (Map) e;
-                comments.add(new Comment(getString(map, "value"), getInt(map, "line")));
+    private StepElement step(JsonReader in) throws IOException {
+        StepElement step = new StepElement();
+        in.beginObject();
+        while (in.hasNext()) {
+            String key = in.nextName();
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+            } else if (key.equals("rows")) {
+                step.rows = new ArrayList<DataTableRow>();
+                in.beginArray();
+                while (in.hasNext()) {
+                    Statement row = statement(in);
+                    step.rows.add(new DataTableRow(row.comments, row.cells, row.line));
+                }
+                in.endArray();
+            } else if (key.equals("doc_string")) {
+                Statement docString = statement(in);
+                step.docString = new DocString(docString.contentType, docString.value, docString.line);
+            } else if (key.equals("match")) {
+                step.match = match(in);
+            } else if (key.equals("result")) {
+                step.result = result(in);
+            } else if (key.equals("embeddings")) {
+                in.beginArray();
+                while (in.hasNext()) {
+                    step.embeddings.add(statement(in));
+                }
+                in.endArray();
+            } else if (key.equals("output")) {
+                in.beginArray();
+                while (in.hasNext()) {
+                    step.output.add(string(in));
+                }
+                in.endArray();
+            } else {
+                step.statement.read(key, in);
             }
         }
-        return comments;
+        in.endObject();
+        return step;
     }
 
-    private List<Tag> tags(Map o) {
-        List<Tag> tags = new ArrayList<Tag>();
-        if (o.containsKey("tags")) {
-            for (Object e : ((List) o.get("tags"))) {
-                Map map = (Map) e;
-                tags.add(new Tag(getString(map, "name"), getInt(map, "line")));
+    private Examples examples(JsonReader in) throws IOException {
+        Statement examples = new Statement();
+        List<ExamplesTableRow> rows = new ArrayList<ExamplesTableRow>();
+        in.beginObject();
+        while (in.hasNext()) {
+            String key = in.nextName();
+            if (key.equals("rows") && in.peek() != JsonToken.NULL) {
+                in.beginArray();
+                while (in.hasNext()) {
+                    Statement row = statement(in);
+                    rows.add(new ExamplesTableRow(row.comments, row.cells, row.line, row.id));
+                }
+                in.endArray();
+            } else {
+                examples.read(key, in);
             }
         }
-        return tags;
+        in.endObject();
+        return new Examples(examples.comments, examples.tags, examples.keyword, examples.name, examples.description, examples.line, examples.id, rows);
     }
 
-    private String keyword(Map o) {
-        return getString(o, "keyword");
+    private Match match(JsonReader in) throws IOException {
+        Statement match = statement(in);
+        return new Match(match.arguments, match.location);
     }
 
-    private String name(Map o) {
-        return getString(o, "name");
+    private Result result(JsonReader in) throws IOException {
+        Statement result = statement(in);
+        return new Result(result.status, result.duration, result.errorMessage);
     }
 
-    private String description(Map o) {
-        return getString(o, "description");
-    }
-
-    private Integer line(Map o) {
-        return getInt(o, "line");
+    private static Statement statement(JsonReader in) throws IOException {
+        Statement statement = new Statement();
+        in.beginObject();
+        while (in.hasNext()) {
+            statement.read(in.nextName(), in);
+        }
+        in.endObject();
+        return statement;
     }
 
-    private String id(Map o) {
-        return getString(o, "id");
+    private static String string(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        return in.nextString();
     }
 
-    private List<Argument> arguments(Map m) {
-        List arguments = getList(m, "arguments");
-        List<Argument> result = new ArrayList<Argument>();
-        for (Object argument : arguments) {
-            Map argMap = (Map) argument;
-            result.add(new Argument(getInt(argMap, "offset"), getString(argMap, "val")));
+    private static Integer integer(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
         }
-        return result;
+        return in.nextInt();
     }
 
-    private String location(Map m) {
-        return getString(m, "location");
+    /**
+     * The keys of the objects that are read into model objects as a whole. Keys that are not
+     * known are skipped.
+     */
+    private static class Statement {
+        private final List<Comment> comments = new ArrayList<Comment>();
+        private final List<Tag> tags = new ArrayList<Tag>();
+        private final List<String> cells = new ArrayList<String>();
+        private final List<Argument> arguments = new ArrayList<Argument>();
+        private String uri;
+        private String type;
+        private String keyword;
+        private String name;
+        private String description;
+        private Integer line;
+        private String id;
+        private String contentType;
+        private String value;
+        private Integer offset;
+        private String val;
+        private String location;
+        private String status;
+        private Long duration;
+        private String errorMessage;
+        private String mimeType;
+        private String data;
+        private String file;
+
+        private void read(String key, JsonReader in) throws IOException {
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+            } else if (key.equals("comments")) {
+                in.beginArray();
+                while (in.hasNext()) {
+                    Statement comment = statement(in);
+                    comments.add(new Comment(comment.value, comment.line));
+                }
+                in.endArray();
+            } else if (key.equals("tags")) {
+                in.beginArray();
+                while (in.hasNext()) {
+                    Statement tag = statement(in);
+                    tags.add(new Tag(tag.name, tag.line));
+                }
+                in.endArray();
+            } else if (key.equals("cells")) {
+                in.beginArray();
+                while (in.hasNext()) {
+                    cells.add(string(in));
+                }
+                in.endArray();
+            } else if (key.equals("arguments")) {
+                in.beginArray();
+                while (in.hasNext()) {
+                    Statement argument = statement(in);
+                    arguments.add(new Argument(argument.offset, argument.val));
+                }
+                in.endArray();
+            } else if (key.equals("duration")) {
+                duration = in.nextLong();
+            } else if (key.equals("line")) {
+                line = integer(in);
+            } else if (key.equals("offset")) {
+                offset = integer(in);
+            } else if (key.equals("uri")) {
+                uri = in.nextString();
+            } else if (key.equals("type")) {
+                type = in.nextString();
+            } else if (key.equals("keyword")) {
+                keyword = in.nextString();
+            } else if (key.equals("name")) {
+                name = in.nextString();
+            } else if (key.equals("description")) {
+                description = in.nextString();
+            } else if (key.equals("id")) {
+                id = in.nextString();
+            } else if (key.equals("content_type")) {
+                contentType = in.nextString();
+            } else if (key.equals("value")) {
+                value = in.nextString();
+            } else if (key.equals("val")) {
+                val = in.nextString();
+            } else if (key.equals("location")) {
+                location = in.nextString();
+            } else if (key.equals("status")) {
+                status = in.nextString();
+            } else if (key.equals("error_message")) {
+                errorMessage = in.nextString();
+            } else if (key.equals("mime_type")) {
+                mimeType = in.nextString();
+            } else if (key.equals("data")) {
+                data = in.nextString();
+            } else if (key.equals("file")) {
+                file = in.nextString();
+            } else {
+                in.skipValue();
+            }
+        }
     }
 
-    private String status(Map r) {
-        return getString(r, "status");
+    class ParsedFeature {
+        private final Statement statement = new Statement();
+        private final List<FeatureElement> featureElements = new ArrayList<FeatureElement>();
+
+        /**
+         * Replays the feature, without the eof.
+         *
+         * @param header whether to replay the uri and the feature itself, or only its elements.
+         */
+        void replay(boolean header) {
+            if (header) {
+                Statement o = statement;
+                formatter.uri(o.uri);
+                new Feature(o.comments, o.tags, o.keyword, o.name, o.description, o.line, o.id).replay(formatter);
+            }
+            for (FeatureElement featureElement : featureElements) {
+                featureElement.replay();
+            }
+        }
     }
 
-    private Long duration(Map r) {
-        return getLong(r, "duration");
-    }
+    private class FeatureElement {
+        private final Statement statement = new Statement();
+        private final List<Hook> before = new ArrayList<Hook>();
+        private final List<StepElement> steps = new ArrayList<StepElement>();
+        private final List<Hook> after = new ArrayList<Hook>();
+        private final List<Examples> examples = new ArrayList<Examples>();
+
+        private void replay() {
+            basicStatement().replay(formatter);
+            for (Hook hook : before) {
+                reporter.before(hook.match, hook.result);
+            }
+            for (StepElement step : steps) {
+                step.replay();
+            }
+            for (Hook hook : after) {
+                reporter.after(hook.match, hook.result);
+            }
+            for (Examples e : examples) {
+                e.replay(formatter);
+            }
+        }
 
-    private String errorMessage(Map r) {
-        return getString(r, "error_message");
+        private BasicStatement basicStatement() {
+            Statement o = statement;
+            if (o.type.equals("background")) {
+                return new Background(o.comments, o.keyword, o.name, o.description, o.line);
+            } else if (o.type.equals("scenario")) {
+                return new Scenario(o.comments, o.tags, o.keyword, o.name, o.description, o.line, o.id);
+            } else if (o.type.equals("scenario_outline")) {
+                return new ScenarioOutline(o.comments, o.tags, o.keyword, o.name, o.description, o.line, o.id);
+            } else {
+                return null;
+            }
+        }
     }
 
-    private String getString(Map map, String key) {
-        Object string = map.get(key);
-        return string == null ? null : (String) string;
+    /**
+     * @return whether the reporter took the embedding as it is in the store, so it didn't have to be loaded.
+     * @throws IllegalArgumentException if the report refers to a file the store couldn't have written.
+     */
+    private boolean stored(Statement embedding) {
+        if (embedding.data == null && embedding.file != null && !EmbeddingStore.isName(embedding.file)) {
+            throw new IllegalArgumentException("Not the name of a stored embedding: " + embedding.file);
+        }
+        return embedding.data == null && embedding.file != null && embeddingStore != null
+                && reporter instanceof StoredEmbeddingReporter
+                && ((StoredEmbeddingReporter) reporter).storedEmbedding(embedding.mimeType, embedding.file, embeddingStore);
     }
 
-    private Integer getInt(Map map, String key) {
-        Object n = map.get(key);
-        return n == null ? null : ((Number) n).intValue();
+    private byte[] bytes(Statement embedding) {
+        if (embedding.data == null && embedding.file != null) {
+            if (embeddingStore == null) {
+                throw new IllegalStateException("The embedding " + embedding.file + " is in a file, but there is no EmbeddingStore to load it from");
+            }
+            return embeddingStore.load(embedding.file);
+        }
+        try {
+            return Base64.decode(embedding.data);
+        } catch (IOException ex) {
+            throw new RuntimeException("Couldn't decode data", ex);
+        }
     }
 
-    private Long getLong(Map map, String key) {
-        Object n = map.get(key);
-        return n == null ? null : ((Number) n).longValue();
+    private static class Hook {
+        private Match match;
+        private Result result;
     }
 
-    private List getList(Map map, String key) {
-        Object list = map.get(key);
-        return list == null ? Collections.emptyList() : (List) list;
+    private class StepElement {
+        private final Statement statement = new Statement();
+        private List<DataTableRow> rows;
+        private DocString docString;
+        private Match match;
+        private Result result;
+        private final List<Statement> embeddings = new ArrayList<Statement>();
+        private final List<String> output = new ArrayList<String>();
+
+        private void replay() {
+            new Step(statement.comments, statement.keyword, statement.name, statement.line, rows, docString).replay(formatter);
+            if (match != null) {
+                match.replay(reporter);
+            }
+            if (result != null) {
+                result.replay(reporter);
+            }
+            for (Statement embedding : embeddings) {
+                if (!stored(embedding)) {
+                    reporter.embedding(embedding.mimeType, bytes(embedding));
+                }
+            }
+            for (String text : output) {
+                reporter.write(text);
+            }
+        }
     }
 }
@@ -0,0 +1,374 @@
+package gherkin;
+
+import gherkin.deps.com.google.gson.stream.JsonReader;
+import gherkin.deps.com.google.gson.stream.JsonToken;
+import gherkin.formatter.EmbeddingStore;
+import gherkin.formatter.Formatter;
+import gherkin.formatter.JSONFormatter;
+import gherkin.formatter.Reporter;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Merges the JSON reports of several runs, for example of tests run in parallel, into one report.
+ * <p>
+ * The features with the same uri and id are merged into one, with the elements of all of them. The
+ * merged features are sorted by uri and id, and the elements of a feature keep the order of the reports
+ * and of the elements in them, so the merged report doesn't depend on which report was read first.
+ * <p>
+ * The reports are read twice, both times on an executor. First for the uri and id of each feature. Then
+ * the features are read in batches, in the merged order, each report of a batch by a task of its own,
+ * and replayed on the calling thread while the next batch is read. So no more than two batches of
+ * features are held in memory at a time.
+ * <p>
+ * Every report is kept open until its last feature is read, so a report with its features in the
+ * merged order is read in one pass. A report is read again from the start only when a feature before
+ * the last one read from it is needed.
+ */
+public class JSONReportMerger {
+    private static final Comparator<FeatureRef> BY_URI_AND_ID = new Comparator<FeatureRef>() {
+        public int compare(FeatureRef a, FeatureRef b) {
+            int byUri = compareNullsFirst(a.uri, b.uri);
+            return byUri != 0 ? byUri : compareNullsFirst(a.id, b.id);
+        }
+    };
+    private static final int BATCH_SIZE = 16;
+
+    private final ExecutorService executor;
+    private final EmbeddingStore embeddingStore;
+
+    /**
+     * @param executor reads the reports. It is not shut down.
+     */
+    public JSONReportMerger(ExecutorService executor) {
+        this(executor, null);
+    }
+
+    /**
+     * @param executor       reads the reports. It is not shut down.
+     * @param embeddingStore holds the embeddings of the reports, and of the merged report.
+     */
+    public JSONReportMerger(ExecutorService executor, EmbeddingStore embeddingStore) {
+        this.executor = executor;
+        this.embeddingStore = embeddingStore;
+    }
+
+    /**
+     * Writes the merged report, one feature at a time. The output is not closed.
+     */
+    public void merge(List<File> reports, Appendable out) {
+        JSONFormatter formatter = new JSONFormatter(out, true, embeddingStore);
+        merge(reports, formatter, formatter);
+        formatter.done();
+    }
+
+    /**
+     * Replays the merged features to the reporter and formatter, on the calling thread.
+     */
+    public void merge(List<File> reports, Reporter reporter, Formatter formatter) {
+        List<FeatureRef> features = index(reports);
+        // A stable sort, so equal features stay in the order of the reports.
+        Collections.sort(features, BY_URI_AND_ID);
+
+        Cursors cursors = new Cursors(reports, features, new JSONParser(reporter, formatter, embeddingStore));
+        Batch batch = null;
+        Batch next = null;
+        try {
+            batch = read(cursors, features, 0);
+            while (batch != null) {
+                batch.await();
+                next = batch.to < features.size() ? read(cursors, features, batch.to) : null;
+                for (int i = batch.from; i < batch.to; i++) {
+                    boolean first = i == 0 || BY_URI_AND_ID.compare(features.get(i - 1), features.get(i)) != 0;
+                    batch.features[i - batch.from].replay(first);
+                    if (i == features.size() - 1 || BY_URI_AND_ID.compare(features.get(i), features.get(i + 1)) != 0) {
+                        formatter.eof();
+                    }
+                }
+                batch = next;
+                next = null;
+            }
+        } finally {
+            // Doesn't do anything to the tasks that are done, unless something failed.
+            if (batch != null) {
+                batch.cancel();
+            }
+            if (next != null) {
+                next.cancel();
+            }
+            cursors.close();
+        }
+    }
+
+    /**
+     * Starts reading the batch of features from the one at the index, with a task for each report.
+     */
+    private Batch read(Cursors cursors, List<FeatureRef> features, int from) {
+        Batch batch = new Batch(from, Math.min(from + BATCH_SIZE, features.size()));
+        Map<Integer, List<Integer>> byReport = new LinkedHashMap<Integer, List<Integer>>();
+        for (int i = batch.from; i < batch.to; i++) {
+            List<Integer> indexes = byReport.get(features.get(i).report);
+            if (indexes == null) {
+                indexes = new ArrayList<Integer>();
+                byReport.put(features.get(i).report, indexes);
+            }
+            indexes.add(i);
+        }
+        for (Map.Entry<Integer, List<Integer>> report : byReport.entrySet()) {
+            batch.reports.add(cursors.reports.get(report.getKey()));
+            batch.reads.add(executor.submit(readTask(cursors, features, batch, report.getValue())));
+        }
+        return batch;
+    }
+
+    private Callable<Void> readTask(final Cursors cursors, final List<FeatureRef> features, final Batch batch, final List<Integer> indexes) {
+        return new Callable<Void>() {
+            public Void call() throws IOException {
+                for (int i : indexes) {
+                    batch.features[i - batch.from] = cursors.read(features.get(i));
+                }
+                return null;
+            }
+        };
+    }
+
+    private List<FeatureRef> index(List<File> reports) {
+        List<Future<List<FeatureRef>>> pending = new ArrayList<Future<List<FeatureRef>>>();
+        for (int i = 0; i < reports.size(); i++) {
+            pending.add(executor.submit(indexTask(reports.get(i), i)));
+        }
+        List<FeatureRef> features = new ArrayList<FeatureRef>();
+        try {
+            for (int i = 0; i < pending.size(); i++) {
+                try {
+                    features.addAll(pending.get(i).get());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new RuntimeException(e);
+                } catch (ExecutionException e) {
+                    throw new RuntimeException("Couldn't read " + reports.get(i).getPath(), e.getCause());
+                }
+            }
+        } finally {
+            // Doesn't do anything to the tasks that are done, unless reading one of them failed.
+            for (Future<List<FeatureRef>> future : pending) {
+                future.cancel(true);
+            }
+        }
+        return features;
+    }
+
+    private Callable<List<FeatureRef>> indexTask(final File report, final int reportIndex) {
+        return new Callable<List<FeatureRef>>() {
+            public List<FeatureRef> call() throws IOException {
+                List<FeatureRef> features = new ArrayList<FeatureRef>();
+                Reader reader = open(report);
+                try {
+                    JsonReader in = jsonReader(reader);
+                    in.beginArray();
+                    while (in.hasNext()) {
+                        FeatureRef feature = new FeatureRef(reportIndex, features.size());
+                        in.beginObject();
+                        while (in.hasNext()) {
+                            String key = in.nextName();
+                            if (in.peek() == JsonToken.NULL) {
+                                in.nextNull();
+                            } else if (key.equals("uri")) {
+                                feature.uri = in.nextString();
+                            } else if (key.equals("id")) {
+                                feature.id = in.nextString();
+                            } else {
+                                in.skipValue();
+                            }
+                        }
+                        in.endObject();
+                        features.add(feature);
+                    }
+                    in.endArray();
+                } finally {
+                    reader.close();
+                }
+                return features;
+            }
+        };
+    }
+
+    private static Reader open(File report) throws IOException {
+        return new InputStreamReader(new FileInputStream(report), "UTF-8");
+    }
+
+    private static JsonReader jsonReader(Reader reader) {
+        JsonReader in = new JsonReader(reader);
+        // Like JSONParser
+        in.setLenient(true);
+        return in;
+    }
+
+    private static int compareNullsFirst(String a, String b) {
+        if (a == null) {
+            return b == null ? 0 : -1;
+        }
+        return b == null ? 1 : a.compareTo(b);
+    }
+
+    /**
+     * Where a feature is, and what it is merged by.
+     */
+    private static class FeatureRef {
+        private final int report;
+        private final int position;
+        private String uri;
+        private String id;
+
+        private FeatureRef(int report, int position) {
+            this.report = report;
+            this.position = position;
+        }
+    }
+
+    /**
+     * Features being read, and the tasks reading them. A report is read by one task at a time, and
+     * the features it reads are seen by the calling thread once it has waited for the task.
+     */
+    private static class Batch {
+        private final int from;
+        private final int to;
+        private final JSONParser.ParsedFeature[] features;
+        private final List<File> reports = new ArrayList<File>();
+        private final List<Future<Void>> reads = new ArrayList<Future<Void>>();
+
+        private Batch(int from, int to) {
+            this.from = from;
+            this.to = to;
+            this.features = new JSONParser.ParsedFeature[to - from];
+        }
+
+        private void await() {
+            for (int i = 0; i < reads.size(); i++) {
+                try {
+                    reads.get(i).get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new RuntimeException(e);
+                } catch (ExecutionException e) {
+                    throw new RuntimeException("Couldn't read " + reports.get(i).getPath(), e.getCause());
+                }
+            }
+        }
+
+        private void cancel() {
+            for (Future<Void> read : reads) {
+                read.cancel(true);
+            }
+        }
+    }
+
+    /**
+     * The reports being read, each at the feature after the last one read. A report is closed once all
+     * its features are read.
+     */
+    private static class Cursors {
+        private final List<File> reports;
+        private final JSONParser parser;
+        private final Cursor[] open;
+        // How many features of each report are still to be read
+        private final int[] left;
+        private boolean closed;
+
+        private Cursors(List<File> reports, List<FeatureRef> features, JSONParser parser) {
+            this.reports = reports;
+            this.parser = parser;
+            this.open = new Cursor[reports.size()];
+            this.left = new int[reports.size()];
+            for (FeatureRef feature : features) {
+                left[feature.report]++;
+            }
+        }
+
+        private JSONParser.ParsedFeature read(FeatureRef feature) throws IOException {
+            Cursor cursor = cursor(feature);
+            for (; cursor.next < feature.position; cursor.next++) {
+                cursor.in.skipValue();
+            }
+            JSONParser.ParsedFeature parsed = parser.read(cursor.in);
+            cursor.next++;
+            if (--left[feature.report] == 0) {
+                close(feature.report);
+            }
+            return parsed;
+        }
+
+        /**
+         * @return the cursor of the report the feature is in, opened again if the feature was passed.
+         */
+        private synchronized Cursor cursor(FeatureRef feature) throws IOException {
+            if (closed) {
+                throw new IOException("The merge was stopped");
+            }
+            Cursor cursor = open[feature.report];
+            if (cursor != null && cursor.next > feature.position) {
+                close(feature.report);
+                cursor = null;
+            }
+            if (cursor == null) {
+                Reader reader = JSONReportMerger.open(reports.get(feature.report));
+                try {
+                    cursor = new Cursor(reader);
+                } catch (IOException e) {
+                    reader.close();
+                    throw e;
+                }
+                open[feature.report] = cursor;
+            }
+            return cursor;
+        }
+
+        private synchronized void close(int report) throws IOException {
+            Cursor cursor = open[report];
+            open[report] = null;
+            if (cursor != null) {
+                cursor.reader.close();
+            }
+        }
+
+        /**
+         * Closes the reports, also those a task is still reading. The task then fails, but nobody waits for it.
+         */
+        private synchronized void close() {
+            closed = true;
+            for (int report = 0; report < open.length; report++) {
+                try {
+                    close(report);
+                } catch (IOException ignore) {
+                    // The report was only read, so nothing is lost
+                }
+            }
+        }
+    }
+
+    private static class Cursor {
+        private final Reader reader;
+        private final JsonReader in;
+        private int next;
+
+        private Cursor(Reader reader) throws IOException {
+            this.reader = reader;
+            this.in = jsonReader(reader);
+            in.beginArray();
+        }
+    }
+}
@@ -1,61 +1,80 @@
 package gherkin;
 
-import gherkin.formatter.Formatter;
+import gherkin.formatter.AsyncFormatter;
+import gherkin.formatter.NiceAppendable;
 import gherkin.formatter.PrettyFormatter;
-import gherkin.parser.Parser;
-import gherkin.util.FixJava;
+import gherkin.parser.FeatureTreeParser;
 
 import java.io.File;
-import java.io.FileFilter;
-import java.io.FileReader;
 import java.io.IOException;
 import java.io.OutputStreamWriter;
 import java.io.Writer;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 public class Main {
-    private FileFilter featureFilter = new FileFilter() {
-        public boolean accept(File file) {
-            return file.isDirectory() || file.getName().endsWith(".feature");
-        }
-    };
-
-    private Parser parser;
     private final Writer out;
+    private final AsyncFormatter formatter;
+    private final FeatureTreeParser parser;
+    // Set when the executor was made here, and is shut down here
+    private final ExecutorService ownExecutor;
 
+    /**
+     * Replays the files on as many threads as there are processors.
+     */
     public Main(final Writer out) {
-        this.out = out;
-        final Formatter formatter = new PrettyFormatter(out, false, true);
-        parser = new Parser(formatter);
+        this(out, Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors()), true);
     }
 
-    private void scanAll(File file) throws IOException {
-        walk(file);
-        out.append('\n');
-        out.close();
+    /**
+     * @param executor replays the files. It is not shut down.
+     */
+    public Main(final Writer out, ExecutorService executor) {
+        this(out, executor, false);
     }
 
-    private void walk(File file) {
-        if (file.isDirectory()) {
-            for (File child : file.listFiles(featureFilter)) {
-                walk(child);
-            }
-        } else {
-            parse(file);
-        }
+    private Main(final Writer out, ExecutorService executor, boolean ownsExecutor) {
+        this.out = out;
+        this.ownExecutor = ownsExecutor ? executor : null;
+        // Pretty printing and writing happen on a thread of their own, while the next files are replayed.
+        // The output is flushed once per feature rather than once per line.
+        formatter = new AsyncFormatter(new PrettyFormatter(new NiceAppendable(out, NiceAppendable.FlushPolicy.FEATURE), false, true));
+        parser = new FeatureTreeParser(formatter, executor, 256);
     }
 
-    private void parse(File file) {
+    private FeatureTreeParser.Summary scanAll(File file) throws IOException {
         try {
-            String input = FixJava.readReader(new FileReader(file));
-            parser.parse(input, file.getPath(), 0);
-        } catch (Exception e) {
-            e.printStackTrace(System.err);
-            System.exit(1);
+            FeatureTreeParser.Summary summary = parser.parse(file);
+            formatter.drain();
+            out.append('\n');
+            formatter.close();
+            return summary;
+        } finally {
+            if (ownExecutor != null) {
+                ownExecutor.shutdown();
+            }
         }
     }
 
     public static void main(String[] args) throws IOException {
-        new Main(new OutputStreamWriter(System.out, "UTF-8")).scanAll(new File(args[0]));
+        int threads = Runtime.getRuntime().availableProcessors();
+        if (args.length > 1) {
+            threads = Integer.parseInt(args[1]);
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        FeatureTreeParser.Summary summary;
+        try {
+            summary = new Main(new OutputStreamWriter(System.out, "UTF-8"), executor).scanAll(new File(args[0]));
+        } finally {
+            executor.shutdown();
+        }
+        for (FeatureTreeParser.FileError error : summary.getErrors()) {
+            System.err.println(error.getFile().getPath() + ":");
+            error.getError().printStackTrace(System.err);
+        }
+        System.err.println(summary);
+        if (!summary.getErrors().isEmpty()) {
+            System.exit(1);
+        }
     }
-
 }
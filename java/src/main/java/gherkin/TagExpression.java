@@ -1,6 +1,7 @@
 package gherkin;
 
 import gherkin.formatter.model.Tag;
+import gherkin.formatter.model.TagSet;
 
 import java.util.ArrayList;
 import java.util.Collection;
@@ -19,6 +20,13 @@ public class TagExpression {
     }
 
     public boolean evaluate(Collection<Tag> tags) {
+        return and.isEmpty() || and.eval(TagSet.of(tags));
+    }
+
+    /**
+     * Like {@link #evaluate(Collection)}, for tags that are already in a set.
+     */
+    public boolean evaluate(TagSet tags) {
         return and.isEmpty() || and.eval(tags);
     }
 
@@ -50,87 +58,57 @@ public class TagExpression {
                 }
                 limits.put(tag, limit);
             }
+            if (!tag.startsWith("@")) {
+                throw new BadTagException(tag);
+            }
 
             if (negation) {
-                or.add(new Not(new TagExp(tag)));
+                or.negative.add(tag);
             } else {
-                or.add(new TagExp(tag));
+                or.positive.add(tag);
             }
         }
-        and.add(or);
-    }
-
-    private interface Expression {
-        boolean eval(Collection<Tag> tags);
-    }
-
-    private class Not implements Expression {
-        private final Expression expression;
-
-        public Not(Expression expression) {
-            this.expression = expression;
-        }
-
-        public boolean eval(Collection<Tag> tags) {
-            return !expression.eval(tags);
-        }
+        and.add(or.compile());
     }
 
-    private class And implements Expression {
-        private List<Expression> expressions = new ArrayList<Expression>();
+    private class And {
+        private List<Or> ors = new ArrayList<Or>();
 
-        public void add(Expression expression) {
-            expressions.add(expression);
+        public void add(Or or) {
+            ors.add(or);
         }
 
-        public boolean eval(Collection<Tag> tags) {
-            boolean result = true;
-            for (Expression expression : expressions) {
-                result = expression.eval(tags);
-                if (!result) break;
+        public boolean eval(TagSet tags) {
+            for (Or or : ors) {
+                if (!or.eval(tags)) {
+                    return false;
+                }
             }
-            return result;
+            return true;
         }
 
         public boolean isEmpty() {
-            return expressions.isEmpty();
+            return ors.isEmpty();
         }
     }
 
-    private class Or implements Expression {
-        private List<Expression> expressions = new ArrayList<Expression>();
-
-        public void add(Expression expression) {
-            expressions.add(expression);
-        }
-
-        public boolean eval(Collection<Tag> tags) {
-            boolean result = false;
-            for (Expression expression : expressions) {
-                result = expression.eval(tags);
-                if (result) break;
-            }
-            return result;
+    /**
+     * True if any of the positive tags is there, or any of the negative ones is not.
+     */
+    private class Or {
+        private List<String> positive = new ArrayList<String>();
+        private List<String> negative = new ArrayList<String>();
+        private TagSet positiveTags;
+        private TagSet negativeTags;
+
+        public Or compile() {
+            positiveTags = TagSet.ofNames(positive);
+            negativeTags = TagSet.ofNames(negative);
+            return this;
         }
-    }
-
-    private class TagExp implements Expression {
-        private final String tagName;
 
-        public TagExp(String tagName) {
-            if (!tagName.startsWith("@")) {
-                throw new BadTagException(tagName);
-            }
-            this.tagName = tagName;
-        }
-
-        public boolean eval(Collection<Tag> tags) {
-            for (Tag tag : tags) {
-                if (tagName.equals(tag.getName())) {
-                    return true;
-                }
-            }
-            return false;
+        public boolean eval(TagSet tags) {
+            return tags.intersects(positiveTags) || !tags.containsAll(negativeTags);
         }
     }
 
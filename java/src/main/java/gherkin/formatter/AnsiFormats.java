@@ -27,21 +27,29 @@ public class AnsiFormats implements Formats {
     }};
 
     public static class ColorFormat implements Format {
-        private final AnsiEscapes[] escapes;
+        private static final String RESET = AnsiEscapes.RESET.toString();
+        private final String prefix;
 
         public ColorFormat(AnsiEscapes... escapes) {
-            this.escapes = escapes;
+            StringBuilder prefix = new StringBuilder();
+            for (AnsiEscapes escape : escapes) {
+                escape.appendTo(prefix);
+            }
+            this.prefix = prefix.toString();
         }
 
         public String text(String text) {
             StringBuilder sb = new StringBuilder();
-            for (AnsiEscapes escape : escapes) {
-                escape.appendTo(sb);
-            }
-            sb.append(text);
-            AnsiEscapes.RESET.appendTo(sb);
+            appendTo(sb, text);
             return sb.toString();
         }
+
+        /**
+         * Appends the formatted text without making a String of it.
+         */
+        public void appendTo(StringBuilder sb, String text) {
+            sb.append(prefix).append(text).append(RESET);
+        }
     }
 
     public Format get(String key) {
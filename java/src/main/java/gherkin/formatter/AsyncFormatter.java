@@ -0,0 +1,361 @@
+package gherkin.formatter;
+
+import gherkin.formatter.model.Background;
+import gherkin.formatter.model.BasicStatement;
+import gherkin.formatter.model.Examples;
+import gherkin.formatter.model.Feature;
+import gherkin.formatter.model.Match;
+import gherkin.formatter.model.Result;
+import gherkin.formatter.model.Scenario;
+import gherkin.formatter.model.ScenarioOutline;
+import gherkin.formatter.model.Step;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Hands the events to another formatter on a thread of its own, so that slow output doesn't stall
+ * the parser. The events are passed through a bounded ring buffer with a single producer, the thread
+ * calling this formatter, and a single consumer.
+ * <p>
+ * The wrapped formatter sees the events in the order they were sent. If it throws, the remaining events
+ * are discarded and the next call on this formatter throws. {@link #close()} waits for the events sent
+ * before it, closes the wrapped formatter and stops the thread.
+ * <p>
+ * The model objects are passed as they are, so they must not be changed after they are sent.
+ * If the wrapped formatter is also a {@link Reporter}, the results are passed to it in the same way.
+ * Otherwise they are ignored.
+ */
+public class AsyncFormatter implements Formatter, Reporter {
+    /**
+     * What the producer does when the buffer is full.
+     */
+    public enum BackPressure {
+        /**
+         * Spin for a while, then park until the consumer catches up.
+         */
+        BLOCK,
+        /**
+         * Busy-wait until the consumer catches up. Lowest latency, when both threads have a core of their own.
+         */
+        SPIN,
+        /**
+         * Throw an {@link IllegalStateException}.
+         */
+        FAIL
+    }
+
+    private static final int SPINS = 256;
+    private static final Event CLOSE = new Event() {
+        public void replay(Formatter formatter) {
+            formatter.close();
+        }
+    };
+
+    private final Formatter formatter;
+    private final BackPressure backPressure;
+    private final Event[] ring;
+    private final int mask;
+    // The next slot the consumer reads. Only written by the consumer.
+    private final AtomicLong head = new AtomicLong();
+    // The next slot the producer writes. Only written by the producer.
+    private final AtomicLong tail = new AtomicLong();
+    private final Thread consumer;
+    private volatile boolean consumerParked;
+    private volatile Thread parkedProducer;
+    private volatile Throwable failure;
+    private boolean closed;
+
+    public AsyncFormatter(Formatter formatter) {
+        this(formatter, 1024, BackPressure.BLOCK);
+    }
+
+    /**
+     * @param formatter    receives the events, on the thread of this formatter.
+     * @param capacity     how many events may be waiting. Rounded up to a power of two.
+     * @param backPressure what to do when that many events are waiting.
+     */
+    public AsyncFormatter(Formatter formatter, int capacity, BackPressure backPressure) {
+        if (formatter == null) throw new NullPointerException("formatter");
+        if (backPressure == null) throw new NullPointerException("backPressure");
+        if (capacity < 1 || capacity > 1 << 30) throw new IllegalArgumentException("capacity must be between 1 and 2^30: " + capacity);
+        this.formatter = formatter;
+        this.backPressure = backPressure;
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) {
+            size <<= 1;
+        }
+        this.ring = new Event[size];
+        this.mask = size - 1;
+        this.consumer = new Thread(new Runnable() {
+            public void run() {
+                consume();
+            }
+        }, "gherkin-async-formatter");
+        consumer.setDaemon(true);
+        consumer.start();
+    }
+
+    /**
+     * Waits until the wrapped formatter has handled the events sent so far.
+     *
+     * @throws RuntimeException if the wrapped formatter threw.
+     */
+    public void drain() {
+        awaitConsumer(tail.get(), backPressure == BackPressure.SPIN);
+        rethrowFailure();
+    }
+
+    public void syntaxError(final String state, final String event, final List<String> legalEvents, final String uri, final Integer line) {
+        publish(new Event() {
+            public void replay(Formatter formatter) {
+                formatter.syntaxError(state, event, legalEvents, uri, line);
+            }
+        });
+    }
+
+    public void uri(final String uri) {
+        publish(new Event() {
+            public void replay(Formatter formatter) {
+                formatter.uri(uri);
+            }
+        });
+    }
+
+    public void feature(Feature feature) {
+        statement(feature);
+    }
+
+    public void scenarioOutline(ScenarioOutline scenarioOutline) {
+        statement(scenarioOutline);
+    }
+
+    public void examples(Examples examples) {
+        statement(examples);
+    }
+
+    public void startOfScenarioLifeCycle(final Scenario scenario) {
+        publish(new Event() {
+            public void replay(Formatter formatter) {
+                formatter.startOfScenarioLifeCycle(scenario);
+            }
+        });
+    }
+
+    public void background(Background background) {
+        statement(background);
+    }
+
+    public void scenario(Scenario scenario) {
+        statement(scenario);
+    }
+
+    public void step(Step step) {
+        statement(step);
+    }
+
+    public void endOfScenarioLifeCycle(final Scenario scenario) {
+        publish(new Event() {
+            public void replay(Formatter formatter) {
+                formatter.endOfScenarioLifeCycle(scenario);
+            }
+        });
+    }
+
+    public void done() {
+        publish(new Event() {
+            public void replay(Formatter formatter) {
+                formatter.done();
+            }
+        });
+    }
+
+    public void eof() {
+        publish(new Event() {
+            public void replay(Formatter formatter) {
+                formatter.eof();
+            }
+        });
+    }
+
+    public void before(final Match match, final Result result) {
+        report(new Event() {
+            public void replay(Formatter formatter) {
+                ((Reporter) formatter).before(match, result);
+            }
+        });
+    }
+
+    public void result(final Result result) {
+        report(new Event() {
+            public void replay(Formatter formatter) {
+                ((Reporter) formatter).result(result);
+            }
+        });
+    }
+
+    public void after(final Match match, final Result result) {
+        report(new Event() {
+            public void replay(Formatter formatter) {
+                ((Reporter) formatter).after(match, result);
+            }
+        });
+    }
+
+    public void match(final Match match) {
+        report(new Event() {
+            public void replay(Formatter formatter) {
+                ((Reporter) formatter).match(match);
+            }
+        });
+    }
+
+    public void embedding(final String mimeType, final byte[] data) {
+        report(new Event() {
+            public void replay(Formatter formatter) {
+                ((Reporter) formatter).embedding(mimeType, data);
+            }
+        });
+    }
+
+    public void write(final String text) {
+        report(new Event() {
+            public void replay(Formatter formatter) {
+                ((Reporter) formatter).write(text);
+            }
+        });
+    }
+
+    /**
+     * Waits for the events sent so far, closes the wrapped formatter and stops the thread. Does nothing
+     * if already closed.
+     *
+     * @throws RuntimeException if the wrapped formatter threw.
+     */
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        enqueue(CLOSE, backPressure == BackPressure.SPIN ? BackPressure.SPIN : BackPressure.BLOCK);
+        boolean interrupted = false;
+        while (consumer.isAlive()) {
+            try {
+                consumer.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        rethrowFailure();
+    }
+
+    private void statement(final BasicStatement statement) {
+        publish(new Event() {
+            public void replay(Formatter formatter) {
+                statement.replay(formatter);
+            }
+        });
+    }
+
+    private void report(Event event) {
+        if (formatter instanceof Reporter) {
+            publish(event);
+        }
+    }
+
+    private void publish(Event event) {
+        if (closed) {
+            throw new IllegalStateException("The formatter is closed");
+        }
+        rethrowFailure();
+        enqueue(event, backPressure);
+    }
+
+    private void enqueue(Event event, BackPressure backPressure) {
+        long position = tail.get();
+        if (position - head.get() == ring.length) {
+            if (backPressure == BackPressure.FAIL) {
+                throw new IllegalStateException("The formatter is " + ring.length + " events behind");
+            }
+            awaitConsumer(position - ring.length + 1, backPressure == BackPressure.SPIN);
+        }
+        ring[(int) position & mask] = event;
+        // A volatile write, so that the consumer is seen parked after it, or sees the event before parking.
+        tail.set(position + 1);
+        if (consumerParked) {
+            LockSupport.unpark(consumer);
+        }
+    }
+
+    /**
+     * Waits until the consumer has read up to the position.
+     */
+    private void awaitConsumer(long position, boolean spin) {
+        int spins = 0;
+        while (head.get() < position) {
+            if (spin || spins++ < SPINS) {
+                continue;
+            }
+            parkedProducer = Thread.currentThread();
+            if (head.get() < position) {
+                LockSupport.park(this);
+            }
+            parkedProducer = null;
+        }
+    }
+
+    private void consume() {
+        long position = head.get();
+        while (true) {
+            int spins = 0;
+            while (tail.get() == position) {
+                if (spins++ < SPINS) {
+                    continue;
+                }
+                consumerParked = true;
+                if (tail.get() == position) {
+                    LockSupport.park(this);
+                    // Nothing interrupts this thread on purpose, and an interrupt would keep park from blocking.
+                    Thread.interrupted();
+                }
+                consumerParked = false;
+            }
+            int slot = (int) position & mask;
+            Event event = ring[slot];
+            ring[slot] = null;
+            // The wrapped formatter is closed even if it failed before.
+            if (failure == null || event == CLOSE) {
+                try {
+                    event.replay(formatter);
+                } catch (Throwable e) {
+                    if (failure == null) {
+                        failure = e;
+                    }
+                }
+            }
+            head.set(++position);
+            Thread producer = parkedProducer;
+            if (producer != null) {
+                LockSupport.unpark(producer);
+            }
+            if (event == CLOSE) {
+                return;
+            }
+        }
+    }
+
+    private void rethrowFailure() {
+        Throwable e = failure;
+        if (e != null) {
+            throw new RuntimeException("The formatter failed on its thread", e);
+        }
+    }
+
+    private interface Event {
+        void replay(Formatter formatter);
+    }
+}
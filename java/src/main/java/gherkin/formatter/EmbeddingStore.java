@@ -0,0 +1,110 @@
+package gherkin.formatter;
+
+import gherkin.util.FixJava;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Keeps embeddings in files of a directory, named after the SHA-1 hash of their bytes, so that a JSON
+ * report only refers to them. The same bytes embedded many times are stored once.
+ * <p>
+ * A store can be shared by formatters on several threads. A file is written under a temporary name
+ * and then renamed, so it is never seen half written.
+ */
+public class EmbeddingStore {
+    private final File directory;
+
+    /**
+     * @param directory is created if it doesn't exist.
+     */
+    public EmbeddingStore(File directory) {
+        this.directory = directory;
+    }
+
+    public File getDirectory() {
+        return directory;
+    }
+
+    /**
+     * @return the name of the file the bytes are stored in, relative to the directory.
+     */
+    public String store(byte[] data) {
+        String name = FixJava.sha1Hex(data);
+        File file = new File(directory, name);
+        if (file.exists()) {
+            return name;
+        }
+        try {
+            if (!directory.isDirectory() && !directory.mkdirs() && !directory.isDirectory()) {
+                throw new IOException("Couldn't create " + directory.getPath());
+            }
+            File temp = File.createTempFile(name, ".tmp", directory);
+            OutputStream out = new FileOutputStream(temp);
+            try {
+                out.write(data);
+            } finally {
+                out.close();
+            }
+            if (!temp.renameTo(file)) {
+                temp.delete();
+                // Unless it was stored by someone else in the meantime
+                if (!file.exists()) {
+                    throw new IOException("Couldn't rename " + temp.getPath() + " to " + file.getPath());
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Couldn't store an embedding in " + directory.getPath(), e);
+        }
+        return name;
+    }
+
+    /**
+     * @return whether {@link #store(byte[])} could have returned the name: 40 lowercase hex digits, so it
+     *         can't refer to a file outside the directory.
+     */
+    public static boolean isName(String name) {
+        if (name == null || name.length() != 40) {
+            return false;
+        }
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (!(c >= '0' && c <= '9' || c >= 'a' && c <= 'f')) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @param name as returned by {@link #store(byte[])}.
+     * @throws IllegalArgumentException if it isn't such a name.
+     */
+    public byte[] load(String name) {
+        if (!isName(name)) {
+            throw new IllegalArgumentException("Not the name of a stored embedding: " + name);
+        }
+        File file = new File(directory, name);
+        try {
+            InputStream in = new FileInputStream(file);
+            try {
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream((int) file.length());
+                byte[] buffer = new byte[8192];
+                int n;
+                while ((n = in.read(buffer)) != -1) {
+                    bytes.write(buffer, 0, n);
+                }
+                return bytes.toByteArray();
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Couldn't load the embedding " + file.getPath(), e);
+        }
+    }
+}
@@ -10,6 +10,7 @@ import gherkin.formatter.model.Scenario;
 import gherkin.formatter.model.ScenarioOutline;
 import gherkin.formatter.model.Step;
 import gherkin.formatter.model.Tag;
+import gherkin.formatter.model.TagSet;
 
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -22,9 +23,14 @@ import java.util.regex.Pattern;
 public class FilterFormatter implements Formatter {
     private final Formatter formatter;
     private final Filter filter;
+    private final TagFilter tagFilter;
     private List<Tag> featureTags;
     private List<Tag> featureElementTags;
     private List<Tag> examplesTags;
+    // A tag filter is given the tags as sets, made once per statement rather than for every evaluation
+    private TagSet featureTagSet = TagSet.EMPTY;
+    private TagSet featureElementTagSet = TagSet.EMPTY;
+    private TagSet examplesTagSet = TagSet.EMPTY;
 
     private List<BasicStatement> featureEvents;
     private List<BasicStatement> backgroundEvents;
@@ -39,6 +45,8 @@ public class FilterFormatter implements Formatter {
     public FilterFormatter(Formatter formatter, List filters) {
         this.formatter = formatter;
         this.filter = detectFilter(filters);
+        // Not for subclasses, which may evaluate the tag lists differently
+        this.tagFilter = filter.getClass() == TagFilter.class ? (TagFilter) filter : null;
 
         featureTags = new ArrayList<Tag>();
         featureElementTags = new ArrayList<Tag>();
@@ -50,7 +58,7 @@ public class FilterFormatter implements Formatter {
         examplesEvents = new ArrayList<BasicStatement>();
     }
 
-    private Filter detectFilter(List filters) {
+    static Filter detectFilter(List filters) {
         Set<Class> filterClasses = new HashSet<Class>();
         for (Object filter : filters) {
             filterClasses.add(filter.getClass());
@@ -79,6 +87,7 @@ public class FilterFormatter implements Formatter {
     @Override
     public void feature(Feature feature) {
         featureTags = feature.getTags();
+        featureTagSet = tagSet(featureTags);
         featureName = feature.getName();
         featureEvents = new ArrayList<BasicStatement>();
         featureEvents.add(feature);
@@ -96,6 +105,7 @@ public class FilterFormatter implements Formatter {
     public void scenario(Scenario scenario) {
         replay();
         featureElementTags = scenario.getTags();
+        featureElementTagSet = tagSet(featureElementTags);
         featureElementName = scenario.getName();
         featureElementRange = scenario.getLineRange();
         featureElementEvents = new ArrayList<BasicStatement>();
@@ -106,6 +116,7 @@ public class FilterFormatter implements Formatter {
     public void scenarioOutline(ScenarioOutline scenarioOutline) {
         replay();
         featureElementTags = scenarioOutline.getTags();
+        featureElementTagSet = tagSet(featureElementTags);
         featureElementName = scenarioOutline.getName();
         featureElementRange = scenarioOutline.getLineRange();
         featureElementEvents = new ArrayList<BasicStatement>();
@@ -116,22 +127,15 @@ public class FilterFormatter implements Formatter {
     public void examples(Examples examples) {
         replay();
         examplesTags.addAll(examples.getTags());
+        examplesTagSet = tagSet(examplesTags);
         examplesName = examples.getName();
 
-        Range tableBodyRange;
-        switch (examples.getRows().size()) {
-            case 0:
-                tableBodyRange = new Range(examples.getLineRange().getLast(), examples.getLineRange().getLast());
-                break;
-            case 1:
-                tableBodyRange = new Range(examples.getRows().get(0).getLine(), examples.getRows().get(0).getLine());
-                break;
-            default:
-                tableBodyRange = new Range(examples.getRows().get(1).getLine(), examples.getRows().get(examples.getRows().size() - 1).getLine());
-        }
+        Range tableBodyRange = tableBodyRange(examples);
         examplesRange = new Range(examples.getLineRange().getFirst(), tableBodyRange.getLast());
         if (filter.evaluate(Collections.<Tag>emptyList(), Collections.<String>emptyList(), Collections.singletonList(tableBodyRange))) {
-            examples.setRows(filter.filterTableBodyRows(examples.getRows()));
+            // A copy, because the Examples may be shared with other formatters.
+            examples = new Examples(examples.getComments(), examples.getTags(), examples.getKeyword(), examples.getName(),
+                    examples.getDescription(), examples.getLine(), examples.getId(), filter.filterTableBodyRows(examples.getRows()));
         }
         examplesEvents = new ArrayList<BasicStatement>();
         examplesEvents.add(examples);
@@ -183,19 +187,27 @@ public class FilterFormatter implements Formatter {
     }
 
     private void replay() {
-        List<Tag> feTags = new ArrayList<Tag>(featureTags);
-        feTags.addAll(featureElementTags);
-        List<String> feNames = Arrays.asList(featureName, featureElementName);
-        List<Range> feRanges = Arrays.asList(featureElementRange);
-        boolean featureElementOk = filter.evaluate(feTags, feNames, feRanges);
-
-        List<Tag> exTags = new ArrayList<Tag>(feTags);
-        exTags.addAll(examplesTags);
-        List<String> exNames = new ArrayList<String>(feNames);
-        exNames.add(examplesName);
-        List<Range> exRanges = new ArrayList<Range>(feRanges);
-        exRanges.add(examplesRange);
-        boolean examplesOk = filter.evaluate(exTags, exNames, exRanges);
+        boolean featureElementOk;
+        boolean examplesOk;
+        if (tagFilter != null) {
+            TagSet feTags = featureTagSet.union(featureElementTagSet);
+            featureElementOk = tagFilter.evaluate(feTags);
+            examplesOk = tagFilter.evaluate(feTags.union(examplesTagSet));
+        } else {
+            List<Tag> feTags = new ArrayList<Tag>(featureTags);
+            feTags.addAll(featureElementTags);
+            List<String> feNames = Arrays.asList(featureName, featureElementName);
+            List<Range> feRanges = Arrays.asList(featureElementRange);
+            featureElementOk = filter.evaluate(feTags, feNames, feRanges);
+
+            List<Tag> exTags = new ArrayList<Tag>(feTags);
+            exTags.addAll(examplesTags);
+            List<String> exNames = new ArrayList<String>(feNames);
+            exNames.add(examplesName);
+            List<Range> exRanges = new ArrayList<Range>(feRanges);
+            exRanges.add(examplesRange);
+            examplesOk = filter.evaluate(exTags, exNames, exRanges);
+        }
 
         if (featureElementOk || examplesOk) {
             replayEvents(featureEvents);
@@ -207,10 +219,26 @@ public class FilterFormatter implements Formatter {
         }
         examplesEvents.clear();
         examplesTags.clear();
+        examplesTagSet = TagSet.EMPTY;
         examplesName = null;
         examplesRange = null;
     }
 
+    static Range tableBodyRange(Examples examples) {
+        switch (examples.getRows().size()) {
+            case 0:
+                return new Range(examples.getLineRange().getLast(), examples.getLineRange().getLast());
+            case 1:
+                return new Range(examples.getRows().get(0).getLine(), examples.getRows().get(0).getLine());
+            default:
+                return new Range(examples.getRows().get(1).getLine(), examples.getRows().get(examples.getRows().size() - 1).getLine());
+        }
+    }
+
+    private TagSet tagSet(List<Tag> tags) {
+        return tagFilter != null ? TagSet.of(tags) : TagSet.EMPTY;
+    }
+
     private void replayEvents(List<BasicStatement> events) {
         for (BasicStatement event : events) {
             event.replay(formatter);
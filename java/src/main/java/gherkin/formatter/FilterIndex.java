@@ -0,0 +1,385 @@
+package gherkin.formatter;
+
+import gherkin.formatter.model.Background;
+import gherkin.formatter.model.Examples;
+import gherkin.formatter.model.Feature;
+import gherkin.formatter.model.Range;
+import gherkin.formatter.model.Scenario;
+import gherkin.formatter.model.ScenarioOutline;
+import gherkin.formatter.model.Step;
+import gherkin.formatter.model.Tag;
+import gherkin.lexer.LexingError;
+import gherkin.parser.Parser;
+import gherkin.util.FixJava;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * An index of what the filters of a {@link FilterFormatter} look at in feature files: the tags, names
+ * and line ranges of their feature elements and examples. It tells which files have anything the
+ * filters let through, so that only those need to be parsed.
+ * <p>
+ * A file is indexed along with the SHA-1 hash of its content, and indexed again when it changes. The
+ * index can be written to a file and read back by the next run.
+ */
+public class FilterIndex {
+    private static final int MAGIC = 0x47464958;
+    private static final int VERSION = 2;
+
+    private final Map<String, FileEntry> files = new LinkedHashMap<String, FileEntry>();
+
+    /**
+     * @return the index in the file, or an empty index if there is no file, or it was written by
+     *         another version.
+     */
+    public static FilterIndex read(File indexFile) {
+        FilterIndex index = new FilterIndex();
+        if (!indexFile.isFile()) {
+            return index;
+        }
+        try {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile)));
+            try {
+                if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                    return index;
+                }
+                String[] strings = new String[in.readInt()];
+                for (int i = 0; i < strings.length; i++) {
+                    byte[] utf8 = new byte[in.readInt()];
+                    in.readFully(utf8);
+                    strings[i] = new String(utf8, "UTF-8");
+                }
+                int fileCount = in.readInt();
+                for (int i = 0; i < fileCount; i++) {
+                    String path = strings[in.readInt()];
+                    FileEntry file = new FileEntry(strings[in.readInt()], in.readBoolean());
+                    int entryCount = in.readInt();
+                    for (int j = 0; j < entryCount; j++) {
+                        file.entries.add(readEntry(in, strings));
+                    }
+                    index.files.put(path, file);
+                }
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Couldn't read the filter index " + indexFile.getPath(), e);
+        }
+        return index;
+    }
+
+    /**
+     * Writes the index under a temporary name first, so that it is never read half written.
+     */
+    public void write(File indexFile) {
+        Map<String, Integer> strings = new LinkedHashMap<String, Integer>();
+        for (Map.Entry<String, FileEntry> file : files.entrySet()) {
+            idOf(file.getKey(), strings);
+            idOf(file.getValue().hash, strings);
+            for (Entry entry : file.getValue().entries) {
+                for (Tag tag : entry.tags) {
+                    idOf(tag.getName(), strings);
+                }
+                for (String name : entry.names) {
+                    idOf(name, strings);
+                }
+            }
+        }
+        try {
+            File directory = indexFile.getAbsoluteFile().getParentFile();
+            File temp = File.createTempFile(indexFile.getName(), ".tmp", directory);
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+            try {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(strings.size());
+                // Not writeUTF, which can't write strings of more than 64 KB
+                for (String string : strings.keySet()) {
+                    byte[] utf8 = string.getBytes("UTF-8");
+                    out.writeInt(utf8.length);
+                    out.write(utf8);
+                }
+                out.writeInt(files.size());
+                for (Map.Entry<String, FileEntry> file : files.entrySet()) {
+                    out.writeInt(strings.get(file.getKey()));
+                    out.writeInt(strings.get(file.getValue().hash));
+                    out.writeBoolean(file.getValue().parsed);
+                    out.writeInt(file.getValue().entries.size());
+                    for (Entry entry : file.getValue().entries) {
+                        writeEntry(out, entry, strings);
+                    }
+                }
+            } finally {
+                out.close();
+            }
+            if (!temp.renameTo(indexFile) && !(indexFile.delete() && temp.renameTo(indexFile))) {
+                temp.delete();
+                throw new IOException("Couldn't rename " + temp.getPath());
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Couldn't write the filter index " + indexFile.getPath(), e);
+        }
+    }
+
+    /**
+     * Indexes the feature file, unless it is already indexed with the same content.
+     *
+     * @return whether the file was indexed.
+     */
+    public boolean update(File feature) {
+        byte[] gherkin = readFile(feature);
+        String hash = FixJava.sha1Hex(gherkin);
+        FileEntry file = files.get(feature.getPath());
+        if (file != null && file.hash.equals(hash)) {
+            return false;
+        }
+        Indexer indexer = new Indexer();
+        try {
+            new Parser(indexer, false).parse(gherkin, feature.getPath(), 0);
+        } catch (LexingError e) {
+            indexer.parsed = false;
+        }
+        file = new FileEntry(hash, indexer.parsed);
+        file.entries.addAll(indexer.entries);
+        files.put(feature.getPath(), file);
+        return true;
+    }
+
+    /**
+     * Forgets the files that are not among the features, for example because they were deleted.
+     */
+    public void retain(Collection<File> features) {
+        Set<String> paths = new HashSet<String>();
+        for (File feature : features) {
+            paths.add(feature.getPath());
+        }
+        for (Iterator<String> it = files.keySet().iterator(); it.hasNext(); ) {
+            if (!paths.contains(it.next())) {
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Updates the index with the feature files first.
+     *
+     * @param filters tags, lines or name patterns, as for {@link FilterFormatter}.
+     * @return the feature files that have anything the filters let through, in the order given. Files
+     *         that can't be parsed are returned too, so that their errors are reported when they are.
+     */
+    public List<File> select(List<File> features, List filters) {
+        Filter filter = FilterFormatter.detectFilter(filters);
+        List<File> selected = new ArrayList<File>();
+        for (File feature : features) {
+            update(feature);
+            FileEntry file = files.get(feature.getPath());
+            if (!file.parsed || file.matches(filter)) {
+                selected.add(feature);
+            }
+        }
+        return selected;
+    }
+
+    private static byte[] readFile(File file) {
+        try {
+            InputStream in = new FileInputStream(file);
+            try {
+                return FixJava.readStream(in);
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Couldn't read " + file.getPath(), e);
+        }
+    }
+
+    private static Entry readEntry(DataInputStream in, String[] strings) throws IOException {
+        List<Tag> tags = new ArrayList<Tag>();
+        for (int n = in.readInt(); n > 0; n--) {
+            tags.add(new Tag(strings[in.readInt()], null));
+        }
+        List<String> names = new ArrayList<String>();
+        for (int n = in.readInt(); n > 0; n--) {
+            int id = in.readInt();
+            names.add(id < 0 ? null : strings[id]);
+        }
+        List<Range> ranges = new ArrayList<Range>();
+        for (int n = in.readInt(); n > 0; n--) {
+            ranges.add(in.readBoolean() ? new Range(in.readInt(), in.readInt()) : null);
+        }
+        return new Entry(tags, names, ranges);
+    }
+
+    private static void writeEntry(DataOutputStream out, Entry entry, Map<String, Integer> strings) throws IOException {
+        out.writeInt(entry.tags.size());
+        for (Tag tag : entry.tags) {
+            out.writeInt(strings.get(tag.getName()));
+        }
+        out.writeInt(entry.names.size());
+        for (String name : entry.names) {
+            out.writeInt(name == null ? -1 : strings.get(name));
+        }
+        out.writeInt(entry.ranges.size());
+        for (Range range : entry.ranges) {
+            out.writeBoolean(range != null);
+            if (range != null) {
+                out.writeInt(range.getFirst());
+                out.writeInt(range.getLast());
+            }
+        }
+    }
+
+    private static void idOf(String string, Map<String, Integer> strings) {
+        if (string != null && !strings.containsKey(string)) {
+            strings.put(string, strings.size());
+        }
+    }
+
+    private static class FileEntry {
+        private final String hash;
+        // False if the file has errors, so that it is never skipped
+        private final boolean parsed;
+        private final List<Entry> entries = new ArrayList<Entry>();
+
+        private FileEntry(String hash, boolean parsed) {
+            this.hash = hash;
+            this.parsed = parsed;
+        }
+
+        private boolean matches(Filter filter) {
+            for (Entry entry : entries) {
+                if (filter.evaluate(entry.tags, entry.names, entry.ranges)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * What a filter is given for a feature element, or for examples.
+     */
+    private static class Entry {
+        private final List<Tag> tags;
+        private final List<String> names;
+        private final List<Range> ranges;
+
+        private Entry(List<Tag> tags, List<String> names, List<Range> ranges) {
+            this.tags = tags;
+            this.names = names;
+            this.ranges = ranges;
+        }
+    }
+
+    /**
+     * Keeps track of the tags, names and ranges the way {@link FilterFormatter} does, and records
+     * everything it would evaluate the filter with when deciding what to replay.
+     */
+    private static class Indexer implements Formatter {
+        private final List<Entry> entries = new ArrayList<Entry>();
+        private boolean parsed = true;
+        private List<Tag> featureTags = new ArrayList<Tag>();
+        private List<Tag> featureElementTags = new ArrayList<Tag>();
+        private List<Tag> examplesTags = new ArrayList<Tag>();
+        private String featureName;
+        private String featureElementName;
+        private String examplesName;
+        private Range featureElementRange;
+        private Range examplesRange;
+
+        public void uri(String uri) {
+        }
+
+        public void feature(Feature feature) {
+            featureTags = feature.getTags();
+            featureName = feature.getName();
+        }
+
+        public void background(Background background) {
+            featureElementName = background.getName();
+            featureElementRange = background.getLineRange();
+        }
+
+        public void scenario(Scenario scenario) {
+            record();
+            featureElementTags = scenario.getTags();
+            featureElementName = scenario.getName();
+            featureElementRange = scenario.getLineRange();
+        }
+
+        public void scenarioOutline(ScenarioOutline scenarioOutline) {
+            record();
+            featureElementTags = scenarioOutline.getTags();
+            featureElementName = scenarioOutline.getName();
+            featureElementRange = scenarioOutline.getLineRange();
+        }
+
+        public void examples(Examples examples) {
+            record();
+            examplesTags = examples.getTags();
+            examplesName = examples.getName();
+            examplesRange = new Range(examples.getLineRange().getFirst(), FilterFormatter.tableBodyRange(examples).getLast());
+        }
+
+        public void step(Step step) {
+            featureElementRange = new Range(featureElementRange.getFirst(), step.getLineRange().getLast());
+        }
+
+        public void eof() {
+            record();
+        }
+
+        public void syntaxError(String state, String event, List<String> legalEvents, String uri, Integer line) {
+            parsed = false;
+        }
+
+        public void done() {
+        }
+
+        public void close() {
+        }
+
+        public void startOfScenarioLifeCycle(Scenario scenario) {
+        }
+
+        public void endOfScenarioLifeCycle(Scenario scenario) {
+        }
+
+        private void record() {
+            List<Tag> feTags = new ArrayList<Tag>(featureTags);
+            feTags.addAll(featureElementTags);
+            List<String> feNames = Arrays.asList(featureName, featureElementName);
+            List<Range> feRanges = Arrays.asList(featureElementRange);
+            entries.add(new Entry(feTags, feNames, feRanges));
+
+            List<Tag> exTags = new ArrayList<Tag>(feTags);
+            exTags.addAll(examplesTags);
+            List<String> exNames = new ArrayList<String>(feNames);
+            exNames.add(examplesName);
+            List<Range> exRanges = new ArrayList<Range>(feRanges);
+            exRanges.add(examplesRange);
+            entries.add(new Entry(exTags, exNames, exRanges));
+
+            examplesTags = new ArrayList<Tag>();
+            examplesName = null;
+            examplesRange = null;
+        }
+    }
+}
@@ -2,7 +2,14 @@ package gherkin.formatter;
 
 import gherkin.deps.com.google.gson.Gson;
 import gherkin.deps.com.google.gson.GsonBuilder;
+import gherkin.deps.com.google.gson.stream.JsonWriter;
 import gherkin.deps.net.iharder.Base64;
+import gherkin.formatter.JSONReport.ElementReport;
+import gherkin.formatter.JSONReport.FeatureReport;
+import gherkin.formatter.JSONReport.HookReport;
+import gherkin.formatter.JSONReport.ResultReport;
+import gherkin.formatter.JSONReport.StepReport;
+import gherkin.formatter.NiceAppendable.FlushPolicy;
 import gherkin.formatter.model.Background;
 import gherkin.formatter.model.Examples;
 import gherkin.formatter.model.Feature;
@@ -12,18 +19,44 @@ import gherkin.formatter.model.Scenario;
 import gherkin.formatter.model.ScenarioOutline;
 import gherkin.formatter.model.Step;
 
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.Writer;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
-public class JSONFormatter implements Reporter, Formatter {
-    private final List<Map<String, Object>> featureMaps = new ArrayList<Map<String, Object>>();
+/**
+ * Writes the features and their results as a JSON array.
+ * <p>
+ * By default the whole array is kept until {@link #done()}. In streaming mode each feature is written
+ * at its {@link #eof()}, so only one feature is kept at a time. Streaming always pretty prints the JSON,
+ * like the default {@link #gson()}.
+ * <p>
+ * With an {@link EmbeddingStore} the bytes of the embeddings are written to files right away, rather than
+ * kept as Base64 in the report.
+ */
+public class JSONFormatter implements Reporter, Formatter, StoredEmbeddingReporter {
+    private final List<FeatureReport> features = new ArrayList<FeatureReport>();
     private final NiceAppendable out;
-
-    private Map<String, Object> featureMap;
+    private final Appendable appendable;
+    private final boolean streaming;
+    private final EmbeddingStore embeddingStore;
+    // Whether gson() is overridden, in which case the features are written as maps, with the Gson it returns.
+    private final boolean customGson;
+    private JsonWriter jsonWriter;
+    private Gson gson;
+    private boolean arrayStarted;
+
+    private FeatureReport feature;
+    private ElementReport featureElement;
+    private List<StepReport> steps;
+    // The first steps of the current feature element without a match and without a result. Steps get
+    // matches and results in order, so the cursors only move forward.
+    private int matchCursor;
+    private int resultCursor;
     private String uri;
-    private List<Map> beforeHooks = new ArrayList<Map>();
+    private List<HookReport> beforeHooks = new ArrayList<HookReport>();
 
     private enum Phase {step, match, embedding, output, result};
 
@@ -59,22 +92,49 @@ public class JSONFormatter implements Reporter, Formatter {
      *
      * @return the correct step for the current operation based on past method calls to the formatter interface
      */
-    private Map getCurrentStep(Phase phase) {
-        String target = phase.ordinal() <= Phase.match.ordinal()?Phase.match.name():Phase.result.name();
-        Map lastWithValue = null;
-        for (Map stepOrHook : getSteps()) {
-            if (stepOrHook.get(target) == null) {
-            	return stepOrHook;
-            } else {
-                lastWithValue = stepOrHook;
+    private StepReport getCurrentStep(Phase phase) {
+        List<StepReport> steps = getSteps();
+        int cursor;
+        if (phase.ordinal() <= Phase.match.ordinal()) {
+            while (matchCursor < steps.size() && steps.get(matchCursor).hasMatch()) {
+                matchCursor++;
+            }
+            cursor = matchCursor;
+        } else {
+            while (resultCursor < steps.size() && steps.get(resultCursor).hasResult()) {
+                resultCursor++;
             }
+            cursor = resultCursor;
+        }
+        if (cursor < steps.size()) {
+            return steps.get(cursor);
         }
-        return lastWithValue;
+        return steps.isEmpty() ? null : steps.get(steps.size() - 1);
     }
 
 
     public JSONFormatter(Appendable out) {
-        this.out = new NiceAppendable(out);
+        this(out, false);
+    }
+
+    /**
+     * @param streaming whether to write each feature at its eof, rather than all of them when done.
+     */
+    public JSONFormatter(Appendable out, boolean streaming) {
+        this(out, streaming, null);
+    }
+
+    /**
+     * @param streaming      whether to write each feature at its eof, rather than all of them when done.
+     * @param embeddingStore keeps the bytes of the embeddings, which the report then refers to by a "file"
+     *                       instead of holding them as Base64 "data". Null to put them in the report.
+     */
+    public JSONFormatter(Appendable out, boolean streaming, EmbeddingStore embeddingStore) {
+        this.out = NiceAppendable.of(out);
+        this.appendable = out;
+        this.streaming = streaming;
+        this.embeddingStore = embeddingStore;
+        this.customGson = overridesGson(getClass());
     }
 
     @Override
@@ -84,102 +144,124 @@ public class JSONFormatter implements Reporter, Formatter {
 
     @Override
     public void feature(Feature feature) {
-        featureMap = feature.toMap();
-        featureMap.put("uri", uri);
-        featureMaps.add(featureMap);
+        this.feature = new FeatureReport(feature, uri);
+        features.add(this.feature);
+        featureElement = null;
+        steps = null;
     }
 
     @Override
     public void background(Background background) {
-        getFeatureElements().add(background.toMap());
+        addFeatureElement(new ElementReport(background));
     }
 
     @Override
     public void scenario(Scenario scenario) {
-        getFeatureElements().add(scenario.toMap());
+        addFeatureElement(new ElementReport(scenario));
         if (beforeHooks.size() > 0) {
-            getFeatureElement().put("before", beforeHooks);
-            beforeHooks = new ArrayList<Map>();
+            featureElement.before(beforeHooks);
+            beforeHooks = new ArrayList<HookReport>();
         }
     }
 
     @Override
     public void scenarioOutline(ScenarioOutline scenarioOutline) {
-        getFeatureElements().add(scenarioOutline.toMap());
+        addFeatureElement(new ElementReport(scenarioOutline));
     }
 
     @Override
     public void examples(Examples examples) {
-        getAllExamples().add(examples.toMap());
+        featureElement.examples(examples);
     }
 
     @Override
     public void step(Step step) {
-        getSteps().add(step.toMap());
+        getSteps().add(new StepReport(step));
     }
 
     @Override
     public void match(Match match) {
-        getCurrentStep(Phase.match).put("match", match.toMap());
+        getCurrentStep(Phase.match).match(match);
     }
 
     @Override
     public void embedding(String mimeType, byte[] data) {
-        final Map<String, String> embedding = new HashMap<String, String>();
-        embedding.put("mime_type", mimeType);
-        embedding.put("data", Base64.encodeBytes(data));
-        getEmbeddings().add(embedding);
+        StepReport step = getCurrentStep(Phase.embedding);
+        if (embeddingStore != null) {
+            step.embedding(mimeType, null, embeddingStore.store(data));
+        } else {
+            step.embedding(mimeType, Base64.encodeBytes(data), null);
+        }
+    }
+
+    /**
+     * Refers to an embedding that is already in the store of this formatter, without loading it.
+     */
+    @Override
+    public boolean storedEmbedding(String mimeType, String name, EmbeddingStore store) {
+        if (embeddingStore == null || !embeddingStore.getDirectory().getAbsoluteFile().equals(store.getDirectory().getAbsoluteFile())) {
+            return false;
+        }
+        getCurrentStep(Phase.embedding).embedding(mimeType, null, name);
+        return true;
     }
 
     @Override
     public void write(String text) {
-        getOutput().add(text);
+        getCurrentStep(Phase.output).write(text);
     }
 
     @Override
     public void result(Result result) {
-        getCurrentStep(Phase.result).put("result", result.toMap());
+        getCurrentStep(Phase.result).result(result);
     }
 
     @Override
     public void before(Match match, Result result) {
-    	beforeHooks.add(buildHookMap(match,result));
+        beforeHooks.add(new HookReport(match, result));
     }
 
     @Override
     public void after(Match match, Result result) {
-        List<Map> hooks = getFeatureElement().get("after");
-        if (hooks == null) {
-            hooks = new ArrayList<Map>();
-            getFeatureElement().put("after", hooks);
-        }
-        hooks.add(buildHookMap(match,result));
-    }
-
-    private Map buildHookMap(final Match match, final Result result) {
-        final Map hookMap = new HashMap();
-        hookMap.put("match", match.toMap());
-        hookMap.put("result", result.toMap());
-        return hookMap;
+        featureElement.after(new HookReport(match, result));
     }
 
     public void appendDuration(final int timestamp) {
-        final Map result = (Map) getCurrentStep(Phase.result).get("result");
+        final ResultReport result = getCurrentStep(Phase.result).getResult();
         // check to make sure result exists (scenario outlines do not have results yet)
         if (result != null) {
             //convert to nanoseconds
             final long nanos = timestamp * 1000000000L;
-            result.put("duration", nanos);
+            result.duration(nanos);
         }
     }
 
     @Override
     public void eof() {
+        if (streaming) {
+            writeFeatures();
+        }
     }
 
     @Override
     public void done() {
-        out.append(gson().toJson(featureMaps));
+        if (customGson && !streaming) {
+            List<Map<String, Object>> featureMaps = new ArrayList<Map<String, Object>>();
+            for (FeatureReport feature : features) {
+                featureMaps.add(feature.toMap());
+            }
+            out.append(gson().toJson(featureMaps));
+            out.flush(FlushPolicy.DONE);
+            return;
+        }
+        writeFeatures();
+        try {
+            beginArray();
+            jsonWriter.endArray();
+            out.flush(FlushPolicy.DONE);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
         // We're *not* closing the stream here.
         // https://github.com/cucumber/gherkin/issues/151
         // https://github.com/cucumber/cucumber-jvm/issues/96
@@ -205,60 +287,122 @@ public class JSONFormatter implements Reporter, Formatter {
         // NoOp
     }
 
-    private List<Map<String, Object>> getFeatureElements() {
-        List<Map<String, Object>> featureElements = (List) featureMap.get("elements");
-        if (featureElements == null) {
-            featureElements = new ArrayList<Map<String, Object>>();
-            featureMap.put("elements", featureElements);
-        }
-        return featureElements;
+    private void addFeatureElement(ElementReport element) {
+        feature.add(element);
+        featureElement = element;
+        steps = null;
+        matchCursor = 0;
+        resultCursor = 0;
     }
 
-    private Map<Object, List<Map>> getFeatureElement() {
-        if (getFeatureElements().size() > 0) {
-            return (Map) getFeatureElements().get(getFeatureElements().size() - 1);
-        } else {
-            return null;
+    private List<StepReport> getSteps() {
+        if (steps == null) {
+            steps = featureElement.getSteps();
         }
+        return steps;
     }
 
-    private List<Map> getAllExamples() {
-        List<Map> allExamples = getFeatureElement().get("examples");
-        if (allExamples == null) {
-            allExamples = new ArrayList<Map>();
-            getFeatureElement().put("examples", allExamples);
-        }
-        return allExamples;
+    /**
+     * The JSON is written without Gson, but as this Gson would write it. Overriding this method makes
+     * the formatter write the JSON with the returned Gson instead.
+     */
+    protected Gson gson() {
+        return new GsonBuilder().setPrettyPrinting().create();
     }
 
-    private List<Map> getSteps() {
-        List<Map> steps = getFeatureElement().get("steps");
-        if (steps == null) {
-            steps = new ArrayList<Map>();
-            getFeatureElement().put("steps", steps);
+    private static boolean overridesGson(Class<?> type) {
+        for (Class<?> c = type; c != JSONFormatter.class; c = c.getSuperclass()) {
+            try {
+                c.getDeclaredMethod("gson");
+                return true;
+            } catch (NoSuchMethodException e) {
+                // Look in the superclass
+            }
         }
-        return steps;
+        return false;
     }
 
-    private List<Map<String, String>> getEmbeddings() {
-        List<Map<String, String>> embeddings = (List<Map<String, String>>) getCurrentStep(Phase.embedding).get("embeddings");
-        if (embeddings == null) {
-            embeddings = new ArrayList<Map<String, String>>();
-            getCurrentStep(Phase.embedding).put("embeddings", embeddings);
+    /**
+     * Writes the features kept so far as elements of the array, and forgets them.
+     */
+    private void writeFeatures() {
+        if (features.isEmpty()) {
+            return;
+        }
+        try {
+            beginArray();
+            for (FeatureReport feature : features) {
+                if (customGson) {
+                    if (gson == null) {
+                        gson = gson();
+                    }
+                    Map<String, Object> map = feature.toMap();
+                    gson.toJson(map, map.getClass(), jsonWriter);
+                } else {
+                    JSONReport.write(jsonWriter, feature);
+                }
+            }
+            out.flush(FlushPolicy.FEATURE);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
         }
-        return embeddings;
+        features.clear();
     }
 
-    private List<String> getOutput() {
-        List<String> output = (List<String>) getCurrentStep(Phase.output).get("output");
-        if (output == null) {
-            output = new ArrayList<String>();
-            getCurrentStep(Phase.output).put("output", output);
+    private void beginArray() throws IOException {
+        if (!arrayStarted) {
+            // Set up like the JsonWriter of the default gson()
+            jsonWriter = new JsonWriter(new AppendableWriter(appendable));
+            jsonWriter.setIndent("  ");
+            jsonWriter.setHtmlSafe(true);
+            jsonWriter.setLenient(true);
+            jsonWriter.setSerializeNulls(false);
+            jsonWriter.beginArray();
+            arrayStarted = true;
         }
-        return output;
     }
 
-    protected Gson gson() {
-        return new GsonBuilder().setPrettyPrinting().create();
+    /**
+     * The JsonWriter writes in small pieces, so unlike the {@link NiceAppendable} this only flushes when asked to.
+     */
+    private static class AppendableWriter extends Writer {
+        private final Appendable out;
+
+        private AppendableWriter(Appendable out) {
+            this.out = out;
+        }
+
+        @Override
+        public void write(char[] chars, int offset, int length) throws IOException {
+            out.append(new String(chars, offset, length));
+        }
+
+        @Override
+        public void write(String s, int offset, int length) throws IOException {
+            out.append(s, offset, offset + length);
+        }
+
+        @Override
+        public Writer append(CharSequence csq) throws IOException {
+            out.append(csq);
+            return this;
+        }
+
+        @Override
+        public void write(int c) throws IOException {
+            out.append((char) c);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (out instanceof Flushable) {
+                ((Flushable) out).flush();
+            }
+        }
+
+        @Override
+        public void close() {
+            // Closed by the NiceAppendable.
+        }
     }
 }
@@ -0,0 +1,560 @@
+package gherkin.formatter;
+
+import gherkin.deps.com.google.gson.stream.JsonWriter;
+import gherkin.formatter.model.BasicStatement;
+import gherkin.formatter.model.Examples;
+import gherkin.formatter.model.Feature;
+import gherkin.formatter.model.Match;
+import gherkin.formatter.model.Result;
+import gherkin.formatter.model.Step;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The features of a JSON report with the results attached to their steps, as the {@link JSONFormatter}
+ * collects them, and the JSON they are written as.
+ * <p>
+ * The model objects are written directly, without building the maps of {@link Mappable#toMap()} and
+ * having Gson write those. The JSON is the same, down to the order of the keys. Gson writes a map in the
+ * order a HashMap iterates over it, which depends on the keys and the order they were put in. A report
+ * object keeps the order its keys were put in, and the order they are written in is found with a HashMap,
+ * once for each sequence of keys.
+ */
+final class JSONReport {
+    private static final Role MODEL = new Role();
+    private static final Role FEATURE = new Role("uri", "elements");
+    private static final Role ELEMENT = new Role("before", "after", "steps", "examples");
+    private static final Role STEP = new Role("match", "result", "embeddings", "output");
+    private static final Role RESULT = new Role("duration");
+    private static final Role HOOK = new Role("match", "result");
+    private static final Role EMBEDDING = new Role("mime_type", "data", "file");
+
+    private JSONReport() {
+    }
+
+    /**
+     * Writes a report, a model object, or a collection or map of them, as Gson would write its map.
+     */
+    static void write(JsonWriter json, Object value) throws IOException {
+        if (value == null) {
+            json.nullValue();
+        } else if (value instanceof Report) {
+            writeReport(json, (Report) value);
+        } else if (value instanceof Mappable) {
+            writeMappable(json, (Mappable) value);
+        } else if (value instanceof String) {
+            json.value((String) value);
+        } else if (value instanceof Number) {
+            json.value((Number) value);
+        } else if (value instanceof Boolean) {
+            json.value(((Boolean) value).booleanValue());
+        } else if (value instanceof Collection) {
+            json.beginArray();
+            for (Object element : (Collection<?>) value) {
+                write(json, element);
+            }
+            json.endArray();
+        } else if (value instanceof Map) {
+            json.beginObject();
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                if (entry.getValue() != null) {
+                    json.name(String.valueOf(entry.getKey()));
+                    write(json, entry.getValue());
+                }
+            }
+            json.endObject();
+        } else {
+            throw new IllegalArgumentException("Can't write a " + value.getClass().getName() + " as JSON");
+        }
+    }
+
+    private static void writeMappable(JsonWriter json, Mappable model) throws IOException {
+        Keys keys = MODEL.keys(model.getClass());
+        if (keys == null) {
+            write(json, model.toMap());
+            return;
+        }
+        writeObject(json, keys, keys.fieldSequence(model), model, null);
+    }
+
+    private static void writeReport(JsonWriter json, Report report) throws IOException {
+        Mappable model = report.model();
+        Keys keys = report.role().keys(model == null ? null : model.getClass());
+        if (keys == null) {
+            write(json, report.toMap());
+            return;
+        }
+        long sequence = model == null ? 0 : keys.fieldSequence(model);
+        for (long extras = report.extras; extras != 0; extras >>>= 4) {
+            int id = keys.extraIds[(int) (extras & 0xF) - 1];
+            if (!contains(sequence, id)) {
+                sequence = append(sequence, id);
+            }
+        }
+        writeObject(json, keys, sequence, model, report);
+    }
+
+    private static void writeObject(JsonWriter json, Keys keys, long sequence, Mappable model, Report report) throws IOException {
+        json.beginObject();
+        for (int id : keys.order(sequence)) {
+            int extra = keys.extraIndexes[id - 1];
+            Object value;
+            if (report != null && extra >= 0 && report.has(extra)) {
+                value = report.extra(extra);
+            } else {
+                value = keys.fieldValue(id, model);
+            }
+            if (value != null) {
+                json.name(keys.names[id - 1]);
+                write(json, value);
+            }
+        }
+        json.endObject();
+    }
+
+    /**
+     * @param sequence ids of 4 bits, the first in the lowest bits. Ids are never 0.
+     */
+    private static long append(long sequence, int id) {
+        int shift = 0;
+        while ((sequence >>> shift & 0xF) != 0) {
+            shift += 4;
+        }
+        return sequence | (long) id << shift;
+    }
+
+    private static boolean contains(long sequence, int id) {
+        for (; sequence != 0; sequence >>>= 4) {
+            if ((sequence & 0xF) == id) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * A kind of report object, with the keys it puts after the fields of its model object, if it has one.
+     */
+    private static final class Role {
+        private final String[] extras;
+        private final ConcurrentMap<Class<?>, Keys> keysByModel = new ConcurrentHashMap<Class<?>, Keys>();
+        private final Keys keysWithoutModel;
+
+        private Role(String... extras) {
+            this.extras = extras;
+            this.keysWithoutModel = Keys.of(new Field[0], extras);
+        }
+
+        /**
+         * @return the keys of the objects of this role with a model of the type, or null if there are
+         *         too many to keep the order of in a long.
+         */
+        private Keys keys(Class<?> model) {
+            if (model == null) {
+                return keysWithoutModel;
+            }
+            Keys keys = keysByModel.get(model);
+            if (keys == null) {
+                Keys found = Keys.of(Mappable.mappableFields(model), extras);
+                keys = keysByModel.putIfAbsent(model, found == null ? Keys.TOO_MANY : found);
+                if (keys == null) {
+                    keys = found == null ? Keys.TOO_MANY : found;
+                }
+            }
+            return keys == Keys.TOO_MANY ? null : keys;
+        }
+    }
+
+    /**
+     * The keys an object can have, numbered from 1: the fields of the model and then the extra keys of the role.
+     */
+    private static final class Keys {
+        private static final int MAX_KEYS = 15;
+        private static final Keys TOO_MANY = new Keys(new String[0], new Field[0], new int[0], new int[0]);
+
+        private final String[] names;
+        private final Field[] fields;
+        private final int[] extraIds;
+        private final int[] extraIndexes;
+        private final ConcurrentMap<Long, int[]> orders = new ConcurrentHashMap<Long, int[]>();
+
+        private Keys(String[] names, Field[] fields, int[] extraIds, int[] extraIndexes) {
+            this.names = names;
+            this.fields = fields;
+            this.extraIds = extraIds;
+            this.extraIndexes = extraIndexes;
+        }
+
+        private static Keys of(Field[] fields, String[] extras) {
+            List<String> names = new ArrayList<String>();
+            for (Field field : fields) {
+                names.add(field.getName());
+            }
+            int[] extraIds = new int[extras.length];
+            for (int i = 0; i < extras.length; i++) {
+                // An extra key can replace the value of a field.
+                int index = names.indexOf(extras[i]);
+                if (index < 0) {
+                    index = names.size();
+                    names.add(extras[i]);
+                }
+                extraIds[i] = index + 1;
+            }
+            if (names.size() > MAX_KEYS) {
+                return null;
+            }
+            int[] extraIndexes = new int[names.size()];
+            for (int i = 0; i < extraIndexes.length; i++) {
+                extraIndexes[i] = -1;
+            }
+            for (int i = 0; i < extraIds.length; i++) {
+                extraIndexes[extraIds[i] - 1] = i;
+            }
+            return new Keys(names.toArray(new String[names.size()]), fields, extraIds, extraIndexes);
+        }
+
+        /**
+         * @return the sequence of the fields toMap would put in the map.
+         */
+        private long fieldSequence(Mappable model) {
+            long sequence = 0;
+            int shift = 0;
+            for (int i = 0; i < fields.length; i++) {
+                if (Mappable.isMapped(fieldValue(i + 1, model))) {
+                    sequence |= (long) (i + 1) << shift;
+                    shift += 4;
+                }
+            }
+            return sequence;
+        }
+
+        private Object fieldValue(int id, Mappable model) {
+            if (id > fields.length) {
+                return null;
+            }
+            try {
+                return fields[id - 1].get(model);
+            } catch (IllegalAccessException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        /**
+         * @return the ids in the order a HashMap iterates over them, after they were put in it in sequence.
+         */
+        private int[] order(long sequence) {
+            Long key = sequence;
+            int[] order = orders.get(key);
+            if (order == null) {
+                Map<String, Integer> map = new HashMap<String, Integer>();
+                for (long s = sequence; s != 0; s >>>= 4) {
+                    int id = (int) (s & 0xF);
+                    map.put(names[id - 1], id);
+                }
+                order = new int[map.size()];
+                int i = 0;
+                for (Integer id : map.values()) {
+                    order[i++] = id;
+                }
+                orders.putIfAbsent(key, order);
+            }
+            return order;
+        }
+    }
+
+    /**
+     * A model object with keys put after its fields, or just keys, like the maps the JSONFormatter used to build.
+     */
+    abstract static class Report {
+        // The indexes + 1 of the extra keys, in the order they were put.
+        private long extras;
+
+        abstract Role role();
+
+        abstract Mappable model();
+
+        abstract Object extra(int index);
+
+        final void put(int index) {
+            if (!has(index)) {
+                extras = append(extras, index + 1);
+            }
+        }
+
+        final boolean has(int index) {
+            return contains(extras, index + 1);
+        }
+
+        /**
+         * @return the map Gson would have been given for this object.
+         */
+        final Map<String, Object> toMap() {
+            Map<String, Object> map = model() == null ? new HashMap<String, Object>() : model().toMap();
+            for (long e = extras; e != 0; e >>>= 4) {
+                int index = (int) (e & 0xF) - 1;
+                map.put(role().extras[index], toMapValue(extra(index)));
+            }
+            return map;
+        }
+
+        private static Object toMapValue(Object value) {
+            if (value instanceof Report) {
+                return ((Report) value).toMap();
+            } else if (value instanceof Mappable) {
+                return ((Mappable) value).toMap();
+            } else if (value instanceof List) {
+                List<Object> list = new ArrayList<Object>();
+                for (Object element : (List<?>) value) {
+                    list.add(toMapValue(element));
+                }
+                return list;
+            }
+            return value;
+        }
+    }
+
+    static final class FeatureReport extends Report {
+        private final Feature feature;
+        private final String uri;
+        private final List<ElementReport> elements = new ArrayList<ElementReport>();
+
+        FeatureReport(Feature feature, String uri) {
+            this.feature = feature;
+            this.uri = uri;
+            put(0);
+        }
+
+        void add(ElementReport element) {
+            put(1);
+            elements.add(element);
+        }
+
+        Role role() {
+            return FEATURE;
+        }
+
+        Mappable model() {
+            return feature;
+        }
+
+        Object extra(int index) {
+            return index == 0 ? uri : elements;
+        }
+    }
+
+    /**
+     * A background, scenario or scenario outline.
+     */
+    static final class ElementReport extends Report {
+        private final BasicStatement statement;
+        private List<HookReport> before;
+        private final List<HookReport> after = new ArrayList<HookReport>();
+        private final List<StepReport> steps = new ArrayList<StepReport>();
+        private final List<Examples> examples = new ArrayList<Examples>();
+
+        ElementReport(BasicStatement statement) {
+            this.statement = statement;
+        }
+
+        void before(List<HookReport> hooks) {
+            put(0);
+            before = hooks;
+        }
+
+        void after(HookReport hook) {
+            put(1);
+            after.add(hook);
+        }
+
+        List<StepReport> getSteps() {
+            put(2);
+            return steps;
+        }
+
+        void examples(Examples examples) {
+            put(3);
+            this.examples.add(examples);
+        }
+
+        Role role() {
+            return ELEMENT;
+        }
+
+        Mappable model() {
+            return statement;
+        }
+
+        Object extra(int index) {
+            switch (index) {
+                case 0:
+                    return before;
+                case 1:
+                    return after;
+                case 2:
+                    return steps;
+                default:
+                    return examples;
+            }
+        }
+    }
+
+    static final class StepReport extends Report {
+        private final Step step;
+        private Match match;
+        private ResultReport result;
+        private final List<EmbeddingReport> embeddings = new ArrayList<EmbeddingReport>();
+        private final List<String> output = new ArrayList<String>();
+
+        StepReport(Step step) {
+            this.step = step;
+        }
+
+        boolean hasMatch() {
+            return match != null;
+        }
+
+        boolean hasResult() {
+            return result != null;
+        }
+
+        void match(Match match) {
+            put(0);
+            this.match = match;
+        }
+
+        void result(Result result) {
+            put(1);
+            this.result = new ResultReport(result);
+        }
+
+        ResultReport getResult() {
+            return result;
+        }
+
+        /**
+         * @param data the Base64 encoded bytes, or null if they are in the file.
+         * @param file the name of the file in an {@link EmbeddingStore}, or null if the bytes are in the data.
+         */
+        void embedding(String mimeType, String data, String file) {
+            put(2);
+            embeddings.add(new EmbeddingReport(mimeType, data, file));
+        }
+
+        void write(String text) {
+            put(3);
+            output.add(text);
+        }
+
+        Role role() {
+            return STEP;
+        }
+
+        Mappable model() {
+            return step;
+        }
+
+        Object extra(int index) {
+            switch (index) {
+                case 0:
+                    return match;
+                case 1:
+                    return result;
+                case 2:
+                    return embeddings;
+                default:
+                    return output;
+            }
+        }
+    }
+
+    static final class ResultReport extends Report {
+        private final Result result;
+        private Long duration;
+
+        ResultReport(Result result) {
+            this.result = result;
+        }
+
+        void duration(long nanos) {
+            put(0);
+            duration = nanos;
+        }
+
+        Role role() {
+            return RESULT;
+        }
+
+        Mappable model() {
+            return result;
+        }
+
+        Object extra(int index) {
+            return duration;
+        }
+    }
+
+    static final class HookReport extends Report {
+        private final Match match;
+        private final Result result;
+
+        HookReport(Match match, Result result) {
+            this.match = match;
+            this.result = result;
+            put(0);
+            put(1);
+        }
+
+        Role role() {
+            return HOOK;
+        }
+
+        Mappable model() {
+            return null;
+        }
+
+        Object extra(int index) {
+            return index == 0 ? match : result;
+        }
+    }
+
+    static final class EmbeddingReport extends Report {
+        private final String mimeType;
+        private final String data;
+        private final String file;
+
+        EmbeddingReport(String mimeType, String data, String file) {
+            this.mimeType = mimeType;
+            this.data = data;
+            this.file = file;
+            put(0);
+            put(data != null ? 1 : 2);
+        }
+
+        Role role() {
+            return EMBEDDING;
+        }
+
+        Mappable model() {
+            return null;
+        }
+
+        Object extra(int index) {
+            switch (index) {
+                case 0:
+                    return mimeType;
+                case 1:
+                    return data;
+                default:
+                    return file;
+            }
+        }
+    }
+}
@@ -5,36 +5,42 @@ import gherkin.formatter.model.Range;
 import gherkin.formatter.model.Tag;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 public class LineFilter implements Filter {
-    private final List<Integer> lines;
+    // Sorted and without duplicates, so that ranges and rows are looked up with a binary search
+    private final int[] lines;
 
     public LineFilter(List<Integer> lines) {
         // During our tests, lines is passed in from Ruby, and it's a list of Long.
-        this.lines = toIntegers(lines);
+        this.lines = toSortedInts(lines);
     }
 
-    private List<Integer> toIntegers(List<?> lines) {
-        List<Integer> result = new ArrayList<Integer>(lines.size());
-        for (Object line : lines) {
+    private int[] toSortedInts(List<?> lines) {
+        int[] result = new int[lines.size()];
+        for (int i = 0; i < result.length; i++) {
+            Object line = lines.get(i);
             if (line instanceof Number) {
-                result.add(((Number) line).intValue());
+                result[i] = ((Number) line).intValue();
             } else {
                 throw new IllegalArgumentException("Not a list of numbers: " + lines);
             }
         }
-        return result;
+        Arrays.sort(result);
+        int distinct = 0;
+        for (int i = 0; i < result.length; i++) {
+            if (distinct == 0 || result[i] != result[distinct - 1]) {
+                result[distinct++] = result[i];
+            }
+        }
+        return distinct == result.length ? result : Arrays.copyOf(result, distinct);
     }
 
     public boolean evaluate(List<Tag> tags, List<String> names, List<Range> ranges) {
         for (Range range : ranges) {
-            if (range != null) {
-                for (Integer line : lines) {
-                    if (range.isInclude(line)) {
-                        return true;
-                    }
-                }
+            if (range != null && includesLineIn(range.getFirst(), range.getLast())) {
+                return true;
             }
         }
         return false;
@@ -43,16 +49,19 @@ public class LineFilter implements Filter {
     public List<ExamplesTableRow> filterTableBodyRows(List<ExamplesTableRow> exampleRows) {
         List<ExamplesTableRow> result = new ArrayList<ExamplesTableRow>();
         for (ExamplesTableRow row : exampleRows) {
-            if (result.isEmpty()) {
+            if (result.isEmpty() || Arrays.binarySearch(lines, row.getLine()) >= 0) {
                 result.add(row);
-            } else {
-                for (Integer line : lines) {
-                    if (row.getLine().equals(line)) {
-                        result.add(row);
-                    }
-                }
             }
         }
         return result;
     }
+
+    private boolean includesLineIn(int first, int last) {
+        int index = Arrays.binarySearch(lines, first);
+        if (index >= 0) {
+            return first <= last;
+        }
+        int next = -index - 1;
+        return next < lines.length && lines[next] <= last;
+    }
 }
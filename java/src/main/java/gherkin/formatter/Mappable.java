@@ -7,27 +7,33 @@ import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 public abstract class Mappable implements Serializable {
     private static final Integer NO_LINE = -1;
+    // The mappable fields of each class, found once and already made accessible.
+    private static final ConcurrentMap<Class<?>, Field[]> MAPPABLE_FIELDS = new ConcurrentHashMap<Class<?>, Field[]>();
 
     public Map<String, Object> toMap() {
+        Field[] mappableFields = getMappableFields();
+        // The default capacity, because it decides the order of the keys in the JSON.
         Map<String, Object> map = new HashMap<String, Object>();
-        List<Field> mappableFields = getMappableFields();
         for (Field field : mappableFields) {
-            Object value;
-            value = getValue(field);
-            if (value != null && Mappable.class.isAssignableFrom(value.getClass())) {
-                value = ((Mappable) value).toMap();
+            Object value = getValue(field);
+            if (!isMapped(value)) {
+                continue;
             }
-            if (value != null && Collection.class.isAssignableFrom(value.getClass())) {
-                List<Object> mappedValue = new ArrayList<Object>();
-                for (Object o : (Collection) value) {
-                    if (Mappable.class.isAssignableFrom(o.getClass())) {
+            if (value instanceof Mappable) {
+                value = ((Mappable) value).toMap();
+            } else if (value instanceof Collection) {
+                Collection<?> collection = (Collection<?>) value;
+                List<Object> mappedValue = new ArrayList<Object>(collection.size());
+                for (Object o : collection) {
+                    if (o instanceof Mappable) {
                         mappedValue.add(((Mappable) o).toMap());
                     } else {
                         mappedValue.add(o);
@@ -35,44 +41,68 @@ public abstract class Mappable implements Serializable {
                 }
                 value = mappedValue;
             }
-            if (value != null && !Collections.EMPTY_LIST.equals(value) && !NO_LINE.equals(value)) {
-                map.put(field.getName(), value);
-            }
+            map.put(field.getName(), value);
         }
         return map;
     }
 
+    /**
+     * @return whether toMap puts a field with this value in the map.
+     */
+    static boolean isMapped(Object value) {
+        return value != null && !(value instanceof Collection && ((Collection) value).isEmpty()) && !NO_LINE.equals(value);
+    }
+
     private Object getValue(Field field) {
         try {
-            field.setAccessible(true);
             return field.get(this);
         } catch (IllegalAccessException e) {
             throw new RuntimeException(e);
         }
     }
 
-    private List<Field> getMappableFields() {
+    private Field[] getMappableFields() {
+        return mappableFields(getClass());
+    }
+
+    /**
+     * @return the fields that toMap puts in the map, in the order it puts them.
+     */
+    static Field[] mappableFields(Class<?> type) {
+        Field[] fields = MAPPABLE_FIELDS.get(type);
+        if (fields == null) {
+            Field[] found = findMappableFields(type);
+            fields = MAPPABLE_FIELDS.putIfAbsent(type, found);
+            if (fields == null) {
+                fields = found;
+            }
+        }
+        return fields;
+    }
+
+    private static Field[] findMappableFields(Class<?> type) {
         List<Field> fields = new ArrayList<Field>();
-        Class c = getClass();
+        Class c = type;
         while (c != null) {
             for (Field field : c.getDeclaredFields()) {
                 if (isMappable(field)) {
+                    field.setAccessible(true);
                     fields.add(field);
                 }
             }
             c = c.getSuperclass();
         }
-        return fields;
+        return fields.toArray(new Field[fields.size()]);
     }
 
-    private boolean isMappable(Field field) {
+    private static boolean isMappable(Field field) {
         boolean transientField = Modifier.isTransient(field.getModifiers());
         boolean instanceField = !Modifier.isStatic(field.getModifiers());
         boolean mappableType = isMappableType(field.getType(), field.getGenericType());
         return !transientField && instanceField && mappableType;
     }
 
-    private boolean isMappableType(Class type, Type genericType) {
+    private static boolean isMappableType(Class type, Type genericType) {
         return String.class.equals(type) ||
                 type.isPrimitive() ||
                 Number.class.isAssignableFrom(type) ||
@@ -80,7 +110,7 @@ public abstract class Mappable implements Serializable {
                 genericType != null && Collection.class.isAssignableFrom(type) && isMappableCollection(genericType);
     }
 
-    private boolean isMappableCollection(Type genericType) {
+    private static boolean isMappableCollection(Type genericType) {
         if (genericType instanceof ParameterizedType) {
             Type[] parameters = ((ParameterizedType) genericType).getActualTypeArguments();
             return parameters[0] instanceof Class && isMappableType((Class) parameters[0], null);
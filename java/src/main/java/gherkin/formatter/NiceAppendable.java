@@ -6,16 +6,65 @@ import java.io.IOException;
 
 /**
  * A nice appendable that doesn't throw checked exceptions
+ * <p>
+ * By default everything is appended and flushed right away. With another {@link FlushPolicy} the text
+ * is kept in a buffer, and only appended and flushed at the points of the policy, or when the buffer
+ * is full. Formatters tell it where they are with {@link #flush(FlushPolicy)}.
  */
-public class NiceAppendable {
+public class NiceAppendable implements Appendable, Flushable {
     private static final CharSequence NL = "\n";
+    private static final int BUFFER_SIZE = 8192;
     private final Appendable out;
+    private final FlushPolicy policy;
+    private final long maxDelayNanos;
+    // Null when everything is appended right away
+    private final StringBuilder buffer;
+    // Reused by println when there is no buffer
+    private StringBuilder line;
+    private long lastFlush;
+
+    /**
+     * When to flush, from the most to the least often. A policy also flushes at all the points after it.
+     */
+    public enum FlushPolicy {
+        APPEND, LINE, SCENARIO, FEATURE, DONE
+    }
 
     public NiceAppendable(Appendable out) {
+        this(out, FlushPolicy.APPEND);
+    }
+
+    public NiceAppendable(Appendable out, FlushPolicy policy) {
+        this(out, policy, 0);
+    }
+
+    /**
+     * @param maxDelayMillis how long text may stay in the buffer before the next append flushes it,
+     *                       whatever the policy. 0 for no limit.
+     */
+    public NiceAppendable(Appendable out, FlushPolicy policy, long maxDelayMillis) {
+        if (policy == null) throw new NullPointerException("policy");
+        if (maxDelayMillis < 0) throw new IllegalArgumentException("maxDelayMillis must not be negative: " + maxDelayMillis);
         this.out = out;
+        this.policy = policy;
+        this.maxDelayNanos = maxDelayMillis * 1000000L;
+        this.buffer = policy == FlushPolicy.APPEND ? null : new StringBuilder(BUFFER_SIZE);
+        this.lastFlush = System.nanoTime();
+    }
+
+    /**
+     * @return the appendable, if it is already a NiceAppendable, so that its policy is kept.
+     */
+    static NiceAppendable of(Appendable out) {
+        return out instanceof NiceAppendable ? (NiceAppendable) out : new NiceAppendable(out);
     }
 
     public NiceAppendable append(CharSequence csq) {
+        if (buffer != null) {
+            buffer.append(csq);
+            appended(csq == null ? FlushPolicy.APPEND : point(csq, 0, csq.length()));
+            return this;
+        }
         try {
             out.append(csq);
             tryFlush();
@@ -26,6 +75,11 @@ public class NiceAppendable {
     }
 
     public NiceAppendable append(CharSequence csq, int start, int end) {
+        if (buffer != null) {
+            buffer.append(csq, start, end);
+            appended(point(csq, start, end));
+            return this;
+        }
         try {
             out.append(csq, start, end);
             tryFlush();
@@ -36,6 +90,11 @@ public class NiceAppendable {
     }
 
     public NiceAppendable append(char c) {
+        if (buffer != null) {
+            buffer.append(c);
+            appended(c == '\n' ? FlushPolicy.LINE : FlushPolicy.APPEND);
+            return this;
+        }
         try {
             out.append(c);
             tryFlush();
@@ -46,15 +105,28 @@ public class NiceAppendable {
     }
 
     public NiceAppendable println() {
+        if (buffer != null) {
+            buffer.append(NL);
+            appended(FlushPolicy.LINE);
+            return this;
+        }
         return append(NL);
     }
 
     public NiceAppendable println(CharSequence csq) {
+        if (buffer != null) {
+            buffer.append(csq).append(NL);
+            appended(FlushPolicy.LINE);
+            return this;
+        }
         try {
-            StringBuilder buffer = new StringBuilder();
-            buffer.append(csq);
-            buffer.append(NL);
-            out.append(buffer.toString());
+            // One append for the whole line, so that the line is never seen without its end
+            if (line == null) {
+                line = new StringBuilder();
+            }
+            line.append(csq).append(NL);
+            out.append(line);
+            line.setLength(0);
             tryFlush();
             return this;
         } catch (IOException e) {
@@ -62,9 +134,27 @@ public class NiceAppendable {
         }
     }
 
+    /**
+     * Flushes if the policy is to flush at this point, or more often.
+     */
+    public void flush(FlushPolicy point) {
+        if (policy.compareTo(point) <= 0) {
+            flush();
+        }
+    }
+
+    /**
+     * Appends the buffered text and flushes, whatever the policy.
+     */
+    public void flush() {
+        writeBuffer();
+        tryFlush();
+        lastFlush = System.nanoTime();
+    }
+
     public void close() {
         try {
-            tryFlush();
+            flush();
             if (out instanceof Closeable) {
                 ((Closeable) out).close();
             }
@@ -73,6 +163,40 @@ public class NiceAppendable {
         }
     }
 
+    /**
+     * @return LINE if the text ends a line and the policy is to flush after each line, APPEND otherwise.
+     */
+    private FlushPolicy point(CharSequence csq, int start, int end) {
+        if (policy == FlushPolicy.LINE) {
+            for (int i = start; i < end; i++) {
+                if (csq.charAt(i) == '\n') {
+                    return FlushPolicy.LINE;
+                }
+            }
+        }
+        return FlushPolicy.APPEND;
+    }
+
+    private void appended(FlushPolicy point) {
+        if (policy.compareTo(point) <= 0 || maxDelayNanos > 0 && System.nanoTime() - lastFlush >= maxDelayNanos) {
+            flush();
+        } else if (buffer.length() >= BUFFER_SIZE) {
+            writeBuffer();
+        }
+    }
+
+    private void writeBuffer() {
+        if (buffer == null || buffer.length() == 0) {
+            return;
+        }
+        try {
+            out.append(buffer);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        buffer.setLength(0);
+    }
+
     private void tryFlush()  {
         if (!(out instanceof Flushable))
             return;
@@ -4,24 +4,52 @@ import gherkin.formatter.model.ExamplesTableRow;
 import gherkin.formatter.model.Range;
 import gherkin.formatter.model.Tag;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
 import java.util.regex.Pattern;
 
+/**
+ * Lets through what has a name any of the patterns finds a match in.
+ * <p>
+ * Each name is scanned once for all the patterns that are plain text, and once for all the other
+ * patterns that can be joined into one alternation. Only patterns with flags, back references, named
+ * groups or quoting are tried one by one.
+ */
 public class PatternFilter implements Filter {
-    private final List<Pattern> patterns;
+    private static final String META_CHARS = "\\^$.|?*+()[]{}";
+
+    private final Literals literals;
+    private final Pattern alternation;
+    private final List<Pattern> patterns = new ArrayList<Pattern>();
 
     public PatternFilter(List<Pattern> patterns) {
-        this.patterns = patterns;
+        List<String> literals = new ArrayList<String>();
+        StringBuilder alternation = new StringBuilder();
+        for (Pattern pattern : patterns) {
+            String literal = literal(pattern);
+            if (literal != null) {
+                literals.add(literal);
+            } else if (joinable(pattern)) {
+                if (alternation.length() > 0) {
+                    alternation.append('|');
+                }
+                alternation.append("(?:").append(pattern.pattern()).append(')');
+            } else {
+                this.patterns.add(pattern);
+            }
+        }
+        this.literals = literals.isEmpty() ? null : new Literals(literals);
+        this.alternation = alternation.length() == 0 ? null : Pattern.compile(alternation.toString());
     }
 
     public boolean evaluate(List<Tag> tags, List<String> names, List<Range> ranges) {
         for (String name : names) {
-            if (name != null) {
-                for (Pattern pattern : patterns) {
-                    if (pattern.matcher(name).find()) {
-                        return true;
-                    }
-                }
+            if (name != null && matches(name)) {
+                return true;
             }
         }
         return false;
@@ -30,4 +58,159 @@ public class PatternFilter implements Filter {
     public List<ExamplesTableRow> filterTableBodyRows(List<ExamplesTableRow> examplesRows) {
         return examplesRows;
     }
+
+    private boolean matches(String name) {
+        if (literals != null && literals.find(name)) {
+            return true;
+        }
+        if (alternation != null && alternation.matcher(name).find()) {
+            return true;
+        }
+        for (Pattern pattern : patterns) {
+            if (pattern.matcher(name).find()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return the text the pattern matches, if it matches nothing but that text.
+     */
+    private static String literal(Pattern pattern) {
+        if (pattern.flags() != 0) {
+            return null;
+        }
+        String regex = pattern.pattern();
+        if (regex.startsWith("\\Q") && regex.endsWith("\\E") && regex.length() >= 4 && regex.indexOf("\\E") == regex.length() - 2) {
+            return regex.substring(2, regex.length() - 2);
+        }
+        for (int i = 0; i < regex.length(); i++) {
+            if (META_CHARS.indexOf(regex.charAt(i)) != -1) {
+                return null;
+            }
+        }
+        return regex;
+    }
+
+    /**
+     * @return whether the pattern means the same as a group in an alternation with others. Patterns with
+     *         flags, inline flags, named groups, back references or quoting don't, or might not.
+     */
+    private static boolean joinable(Pattern pattern) {
+        if (pattern.flags() != 0) {
+            return false;
+        }
+        String regex = pattern.pattern();
+        for (int i = 0; i < regex.length() - 1; i++) {
+            char c = regex.charAt(i);
+            char next = regex.charAt(i + 1);
+            if (c == '\\') {
+                if (Character.isDigit(next) || next == 'k' || next == 'Q') {
+                    return false;
+                }
+                i++;
+            } else if (c == '(' && next == '?') {
+                String construct = regex.substring(i + 2, Math.min(i + 4, regex.length()));
+                if (!(construct.startsWith(":") || construct.startsWith("=") || construct.startsWith("!")
+                        || construct.startsWith(">") || construct.equals("<=") || construct.equals("<!"))) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * An Aho-Corasick automaton, which finds any of the words in a text in one pass over it.
+     */
+    private static class Literals {
+        private final char[][] keys;
+        private final int[][] targets;
+        private final int[] fail;
+        private final boolean[] output;
+
+        private Literals(List<String> words) {
+            List<Map<Character, Integer>> trie = new ArrayList<Map<Character, Integer>>();
+            List<Boolean> ends = new ArrayList<Boolean>();
+            trie.add(new TreeMap<Character, Integer>());
+            ends.add(false);
+            for (String word : words) {
+                int state = 0;
+                for (int i = 0; i < word.length(); i++) {
+                    Integer next = trie.get(state).get(word.charAt(i));
+                    if (next == null) {
+                        next = trie.size();
+                        trie.get(state).put(word.charAt(i), next);
+                        trie.add(new TreeMap<Character, Integer>());
+                        ends.add(false);
+                    }
+                    state = next;
+                }
+                ends.set(state, true);
+            }
+
+            int size = trie.size();
+            keys = new char[size][];
+            targets = new int[size][];
+            fail = new int[size];
+            output = new boolean[size];
+            for (int state = 0; state < size; state++) {
+                Map<Character, Integer> children = trie.get(state);
+                keys[state] = new char[children.size()];
+                targets[state] = new int[children.size()];
+                int i = 0;
+                for (Map.Entry<Character, Integer> child : children.entrySet()) {
+                    keys[state][i] = child.getKey();
+                    targets[state][i] = child.getValue();
+                    i++;
+                }
+                output[state] = ends.get(state);
+            }
+
+            // Breadth first, so that the failure state of a state is done before the state
+            LinkedList<Integer> queue = new LinkedList<Integer>();
+            queue.add(0);
+            while (!queue.isEmpty()) {
+                int state = queue.removeFirst();
+                for (int i = 0; i < keys[state].length; i++) {
+                    int target = targets[state][i];
+                    if (state != 0) {
+                        int f = fail[state];
+                        int next;
+                        while ((next = step(f, keys[state][i])) < 0 && f != 0) {
+                            f = fail[f];
+                        }
+                        fail[target] = next < 0 ? 0 : next;
+                        output[target] |= output[fail[target]];
+                    }
+                    queue.add(target);
+                }
+            }
+        }
+
+        private boolean find(String text) {
+            if (output[0]) {
+                return true;
+            }
+            int state = 0;
+            for (int i = 0; i < text.length(); i++) {
+                char c = text.charAt(i);
+                int next;
+                while ((next = step(state, c)) < 0 && state != 0) {
+                    state = fail[state];
+                }
+                state = next < 0 ? 0 : next;
+                if (output[state]) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private int step(int state, char c) {
+            int i = Arrays.binarySearch(keys[state], c);
+            return i < 0 ? -1 : targets[state][i];
+        }
+    }
 }
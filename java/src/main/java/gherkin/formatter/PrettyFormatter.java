@@ -1,5 +1,6 @@
 package gherkin.formatter;
 
+import gherkin.formatter.NiceAppendable.FlushPolicy;
 import gherkin.formatter.model.Background;
 import gherkin.formatter.model.BasicStatement;
 import gherkin.formatter.model.CellResult;
@@ -18,8 +19,10 @@ import gherkin.formatter.model.Tag;
 import gherkin.formatter.model.TagStatement;
 import gherkin.util.Mapper;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Deque;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -48,20 +51,24 @@ public class PrettyFormatter implements Reporter, Formatter {
     };
     private Formats formats;
     private Match match;
-    private int[][] cellLengths;
+    // The escaped cells of the rows of the table, escaped once for measuring and printing them
+    private String[][] escapedCells;
     private int[] maxLengths;
     private int rowIndex;
     private List<? extends Row> rows;
     private Integer rowHeight = null;
     private boolean rowsAbove = false;
 
-    private List<Step> steps = new ArrayList<Step>();
-    private List<Integer> indentations = new ArrayList<Integer>();
-    private List<MatchResultPair> matchesAndResults = new ArrayList<MatchResultPair>();
+    private Deque<Step> steps = new ArrayDeque<Step>();
+    private Deque<Integer> indentations = new ArrayDeque<Integer>();
+    private Deque<MatchResultPair> matchesAndResults = new ArrayDeque<MatchResultPair>();
+    // Reused for every step and table row
+    private final StringBuilder line = new StringBuilder();
+    private final NiceAppendable lineAppendable = new NiceAppendable(line);
     private DescribedStatement statement;
 
     public PrettyFormatter(Appendable out, boolean monochrome, boolean executing) {
-        this.out = new NiceAppendable(out);
+        this.out = NiceAppendable.of(out);
         this.executing = executing;
         setMonochrome(monochrome);
     }
@@ -90,18 +97,21 @@ public class PrettyFormatter implements Reporter, Formatter {
     @Override
     public void background(Background background) {
         replay();
+        out.flush(FlushPolicy.SCENARIO);
         statement = background;
     }
 
     @Override
     public void scenario(Scenario scenario) {
         replay();
+        out.flush(FlushPolicy.SCENARIO);
         statement = scenario;
     }
 
     @Override
     public void scenarioOutline(ScenarioOutline scenarioOutline) {
         replay();
+        out.flush(FlushPolicy.SCENARIO);
         statement = scenarioOutline;
     }
 
@@ -112,7 +122,7 @@ public class PrettyFormatter implements Reporter, Formatter {
 
     @Override
     public void endOfScenarioLifeCycle(Scenario scenario) {
-        // NoOp
+        out.flush(FlushPolicy.SCENARIO);
     }
 
     private void replay() {
@@ -126,7 +136,7 @@ public class PrettyFormatter implements Reporter, Formatter {
             if (matchesAndResults.isEmpty()) {
                 printStep("skipped", Collections.<Argument>emptyList(), null);
             } else {
-                MatchResultPair matchAndResult = matchesAndResults.remove(0);
+                MatchResultPair matchAndResult = matchesAndResults.removeFirst();
                 printStep(matchAndResult.getResultStatus(), matchAndResult.getMatchArguments(),
                         matchAndResult.getMatchLocation());
                 if (matchAndResult.hasResultErrorMessage()) {
@@ -151,24 +161,19 @@ public class PrettyFormatter implements Reporter, Formatter {
         buffer.append(": ");
         buffer.append(statement.getName());
         String location = executing ? uri + ":" + statement.getLine() : null;
-        buffer.append(indentedLocation(location));
+        appendIndentedLocation(buffer, location);
         out.println(buffer);
         printDescription(statement.getDescription(), "    ", true);
         statement = null;
     }
 
-    private String indentedLocation(String location) {
-        StringBuilder sb = new StringBuilder();
-        int indentation = indentations.isEmpty() ? 0 : indentations.remove(0);
+    private void appendIndentedLocation(StringBuilder buffer, String location) {
+        int indentation = indentations.isEmpty() ? 0 : indentations.removeFirst();
         if (location == null) {
-            return "";
-        }
-        for (int i = 0; i < indentation; i++) {
-            sb.append(' ');
+            return;
         }
-        sb.append(' ');
-        sb.append(getFormat("comment").text("# " + location));
-        return sb.toString();
+        padSpace(buffer, indentation + 1);
+        appendFormatted(buffer, getFormat("comment"), "# " + location);
     }
 
     @Override
@@ -248,16 +253,18 @@ public class PrettyFormatter implements Reporter, Formatter {
     }
 
     private void printStep(String status, List<Argument> arguments, String location) {
-        Step step = steps.remove(0);
+        Step step = steps.removeFirst();
         Format textFormat = getFormat(status);
         Format argFormat = getArgFormat(status);
 
         printComments(step.getComments(), "    ");
 
-        StringBuilder buffer = new StringBuilder("    ");
-        buffer.append(textFormat.text(step.getKeyword()));
-        stepPrinter.writeStep(new NiceAppendable(buffer), textFormat, argFormat, step.getName(), arguments);
-        buffer.append(indentedLocation(location));
+        StringBuilder buffer = line;
+        buffer.setLength(0);
+        buffer.append("    ");
+        appendFormatted(buffer, textFormat, step.getKeyword());
+        stepPrinter.writeStep(lineAppendable, textFormat, argFormat, step.getName(), arguments);
+        appendIndentedLocation(buffer, location);
 
         out.println(buffer);
         if (step.getRows() != null) {
@@ -296,16 +303,15 @@ public class PrettyFormatter implements Reporter, Formatter {
             }
         }
 
-        cellLengths = new int[rows.size()][columnCount];
+        escapedCells = new String[rows.size()][columnCount];
         maxLengths = new int[columnCount];
         for (int rowIndex = 0; rowIndex < rows.size(); rowIndex++) {
             Row row = rows.get(rowIndex);
             final List<String> cells = row.getCells();
             for (int colIndex = 0; colIndex < columnCount; colIndex++) {
-                final String cell = getCellSafely(cells, colIndex);
-                final int length = escapeCell(cell).length();
-                cellLengths[rowIndex][colIndex] = length;
-                maxLengths[colIndex] = Math.max(maxLengths[colIndex], length);
+                final String cell = escapeCell(getCellSafely(cells, colIndex));
+                escapedCells[rowIndex][colIndex] = cell;
+                maxLengths[colIndex] = Math.max(maxLengths[colIndex], cell.length());
             }
         }
         rowIndex = 0;
@@ -316,7 +322,8 @@ public class PrettyFormatter implements Reporter, Formatter {
     }
 
     public void row(List<CellResult> cellResults) {
-        StringBuilder buffer = new StringBuilder();
+        StringBuilder buffer = line;
+        buffer.setLength(0);
         Row row = rows.get(rowIndex);
         if (rowsAbove) {
             buffer.append(formats.up(rowHeight));
@@ -336,14 +343,18 @@ public class PrettyFormatter implements Reporter, Formatter {
                 buffer.append("      | ");
                 break;
             case DELETE:
-                buffer.append("    ").append(formats.get("skipped").text("-")).append(" | ");
+                buffer.append("    ");
+                appendFormatted(buffer, formats.get("skipped"), "-");
+                buffer.append(" | ");
                 break;
             case INSERT:
-                buffer.append("    ").append(formats.get("comment").text("+")).append(" | ");
+                buffer.append("    ");
+                appendFormatted(buffer, formats.get("comment"), "+");
+                buffer.append(" | ");
                 break;
         }
         for (int colIndex = 0; colIndex < maxLengths.length; colIndex++) {
-            String cellText = escapeCell(getCellSafely(row.getCells(), colIndex));
+            String cellText = escapedCells[rowIndex][colIndex];
             String status = null;
             switch (row.getDiffType()) {
                 case NONE:
@@ -357,8 +368,8 @@ public class PrettyFormatter implements Reporter, Formatter {
                     break;
             }
             Format format = formats.get(status);
-            buffer.append(format.text(cellText));
-            int padding = maxLengths[colIndex] - cellLengths[rowIndex][colIndex];
+            appendFormatted(buffer, format, cellText);
+            int padding = maxLengths[colIndex] - cellText.length();
             padSpace(buffer, padding);
             if (colIndex < maxLengths.length - 1) {
                 buffer.append(" | ");
@@ -368,10 +379,13 @@ public class PrettyFormatter implements Reporter, Formatter {
         }
         out.println(buffer);
         rowHeight++;
-        Set<Result> seenResults = new HashSet<Result>();
+        Set<Result> seenResults = null;
         for (CellResult cellResult : cellResults) {
             for (Result result : cellResult.getResults()) {
-                if (result.getErrorMessage() != null && !seenResults.contains(result)) {
+                if (result.getErrorMessage() != null && (seenResults == null || !seenResults.contains(result))) {
+                    if (seenResults == null) {
+                        seenResults = new HashSet<Result>();
+                    }
                     printError(result);
                     rowHeight += result.getErrorMessage().split("\n").length;
                     seenResults.add(result);
@@ -397,6 +411,7 @@ public class PrettyFormatter implements Reporter, Formatter {
 
     @Override
     public void done() {
+        out.flush(FlushPolicy.DONE);
         // We're *not* closing the stream here.
         // https://github.com/cucumber/gherkin/issues/151
         // https://github.com/cucumber/cucumber-jvm/issues/96
@@ -407,8 +422,36 @@ public class PrettyFormatter implements Reporter, Formatter {
         out.close();
     }
 
-    private String escapeCell(String cell) {
-        return cell.replaceAll("\\\\(?!\\|)", "\\\\\\\\").replaceAll("\\n", "\\\\n").replaceAll("\\|", "\\\\|");
+    /**
+     * Escapes backslashes that are not followed by a |, newlines and |s, in one pass.
+     */
+    private static String escapeCell(String cell) {
+        StringBuilder escaped = null;
+        for (int i = 0; i < cell.length(); i++) {
+            char c = cell.charAt(i);
+            String escape;
+            if (c == '\\') {
+                escape = i + 1 < cell.length() && cell.charAt(i + 1) == '|' ? null : "\\\\";
+            } else if (c == '\n') {
+                escape = "\\n";
+            } else if (c == '|') {
+                escape = "\\|";
+            } else {
+                escape = null;
+            }
+            if (escape != null && escaped == null) {
+                escaped = new StringBuilder(cell.length() + 8);
+                escaped.append(cell, 0, i);
+            }
+            if (escaped != null) {
+                if (escape != null) {
+                    escaped.append(escape);
+                } else {
+                    escaped.append(c);
+                }
+            }
+        }
+        return escaped == null ? cell : escaped.toString();
     }
 
     public void docString(DocString docString) {
@@ -419,6 +462,7 @@ public class PrettyFormatter implements Reporter, Formatter {
 
     public void eof() {
         replay();
+        out.flush(FlushPolicy.FEATURE);
     }
 
     private void calculateLocationIndentations() {
@@ -439,9 +483,20 @@ public class PrettyFormatter implements Reporter, Formatter {
         }
     }
 
-    private void padSpace(StringBuilder buffer, int indent) {
-        for (int i = 0; i < indent; i++) {
-            buffer.append(" ");
+    private static void padSpace(StringBuilder buffer, int indent) {
+        for (; indent > SPACES.length(); indent -= SPACES.length()) {
+            buffer.append(SPACES);
+        }
+        if (indent > 0) {
+            buffer.append(SPACES, 0, indent);
+        }
+    }
+
+    private static void appendFormatted(StringBuilder buffer, Format format, String text) {
+        if (format instanceof AnsiFormats.ColorFormat) {
+            ((AnsiFormats.ColorFormat) format).appendTo(buffer, text);
+        } else {
+            buffer.append(format.text(text));
         }
     }
 
@@ -463,6 +518,8 @@ public class PrettyFormatter implements Reporter, Formatter {
         }
     }
 
+    private static final String SPACES = "                                ";
+
     private static final Pattern START = Pattern.compile("^", Pattern.MULTILINE);
 
     private static String indent(String s, String indentation) {
@@ -0,0 +1,13 @@
+package gherkin.formatter;
+
+/**
+ * A reporter that can take an embedding that is already in an {@link EmbeddingStore} by its name, so
+ * that the embedding doesn't have to be loaded to be reported.
+ */
+public interface StoredEmbeddingReporter {
+    /**
+     * @param name the name of the embedding in the store.
+     * @return whether the embedding was taken. If not, it has to be reported with its bytes.
+     */
+    boolean storedEmbedding(String mimeType, String name, EmbeddingStore store);
+}
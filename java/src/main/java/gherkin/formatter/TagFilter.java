@@ -4,6 +4,7 @@ import gherkin.TagExpression;
 import gherkin.formatter.model.ExamplesTableRow;
 import gherkin.formatter.model.Range;
 import gherkin.formatter.model.Tag;
+import gherkin.formatter.model.TagSet;
 
 import java.util.List;
 
@@ -18,6 +19,10 @@ public class TagFilter implements Filter {
         return tagExpression.evaluate(tags);
     }
 
+    public boolean evaluate(TagSet tags) {
+        return tagExpression.evaluate(tags);
+    }
+
     public List<ExamplesTableRow> filterTableBodyRows(List<ExamplesTableRow> examplesRows) {
         return examplesRows;
     }
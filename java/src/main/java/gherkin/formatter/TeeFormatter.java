@@ -0,0 +1,178 @@
+package gherkin.formatter;
+
+import gherkin.formatter.model.Background;
+import gherkin.formatter.model.Examples;
+import gherkin.formatter.model.Feature;
+import gherkin.formatter.model.Match;
+import gherkin.formatter.model.Result;
+import gherkin.formatter.model.Scenario;
+import gherkin.formatter.model.ScenarioOutline;
+import gherkin.formatter.model.Step;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Sends every event to several formatters, so that one parse can produce several outputs. The formatters
+ * share the model objects. The results are sent to the formatters that are also {@link Reporter}s.
+ * <p>
+ * The formatters can each run on a thread of their own, through an {@link AsyncFormatter}. A slow
+ * formatter then only holds back the others when its buffer is full.
+ */
+public class TeeFormatter implements Formatter, Reporter {
+    private final List<Formatter> formatters;
+
+    public TeeFormatter(List<? extends Formatter> formatters) {
+        this(formatters, false);
+    }
+
+    /**
+     * @param formatters receive the events, in this order.
+     * @param ownThreads whether each formatter gets a thread of its own.
+     */
+    public TeeFormatter(List<? extends Formatter> formatters, boolean ownThreads) {
+        this.formatters = new ArrayList<Formatter>(formatters.size());
+        for (Formatter formatter : formatters) {
+            this.formatters.add(ownThreads ? new AsyncFormatter(formatter) : formatter);
+        }
+    }
+
+    public void syntaxError(String state, String event, List<String> legalEvents, String uri, Integer line) {
+        for (Formatter formatter : formatters) {
+            formatter.syntaxError(state, event, legalEvents, uri, line);
+        }
+    }
+
+    public void uri(String uri) {
+        for (Formatter formatter : formatters) {
+            formatter.uri(uri);
+        }
+    }
+
+    public void feature(Feature feature) {
+        for (Formatter formatter : formatters) {
+            formatter.feature(feature);
+        }
+    }
+
+    public void scenarioOutline(ScenarioOutline scenarioOutline) {
+        for (Formatter formatter : formatters) {
+            formatter.scenarioOutline(scenarioOutline);
+        }
+    }
+
+    public void examples(Examples examples) {
+        for (Formatter formatter : formatters) {
+            formatter.examples(examples);
+        }
+    }
+
+    public void startOfScenarioLifeCycle(Scenario scenario) {
+        for (Formatter formatter : formatters) {
+            formatter.startOfScenarioLifeCycle(scenario);
+        }
+    }
+
+    public void background(Background background) {
+        for (Formatter formatter : formatters) {
+            formatter.background(background);
+        }
+    }
+
+    public void scenario(Scenario scenario) {
+        for (Formatter formatter : formatters) {
+            formatter.scenario(scenario);
+        }
+    }
+
+    public void step(Step step) {
+        for (Formatter formatter : formatters) {
+            formatter.step(step);
+        }
+    }
+
+    public void endOfScenarioLifeCycle(Scenario scenario) {
+        for (Formatter formatter : formatters) {
+            formatter.endOfScenarioLifeCycle(scenario);
+        }
+    }
+
+    public void done() {
+        for (Formatter formatter : formatters) {
+            formatter.done();
+        }
+    }
+
+    /**
+     * Closes all the formatters, even if some of them throw. The first exception is rethrown.
+     */
+    public void close() {
+        RuntimeException failure = null;
+        for (Formatter formatter : formatters) {
+            try {
+                formatter.close();
+            } catch (RuntimeException e) {
+                if (failure == null) {
+                    failure = e;
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    public void eof() {
+        for (Formatter formatter : formatters) {
+            formatter.eof();
+        }
+    }
+
+    public void before(Match match, Result result) {
+        for (Formatter formatter : formatters) {
+            if (formatter instanceof Reporter) {
+                ((Reporter) formatter).before(match, result);
+            }
+        }
+    }
+
+    public void result(Result result) {
+        for (Formatter formatter : formatters) {
+            if (formatter instanceof Reporter) {
+                ((Reporter) formatter).result(result);
+            }
+        }
+    }
+
+    public void after(Match match, Result result) {
+        for (Formatter formatter : formatters) {
+            if (formatter instanceof Reporter) {
+                ((Reporter) formatter).after(match, result);
+            }
+        }
+    }
+
+    public void match(Match match) {
+        for (Formatter formatter : formatters) {
+            if (formatter instanceof Reporter) {
+                ((Reporter) formatter).match(match);
+            }
+        }
+    }
+
+    public void embedding(String mimeType, byte[] data) {
+        for (Formatter formatter : formatters) {
+            if (formatter instanceof Reporter) {
+                ((Reporter) formatter).embedding(mimeType, data);
+            }
+        }
+    }
+
+    public void write(String text) {
+        for (Formatter formatter : formatters) {
+            if (formatter instanceof Reporter) {
+                ((Reporter) formatter).write(text);
+            }
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package gherkin.formatter;
 
+import gherkin.formatter.NiceAppendable.FlushPolicy;
 import gherkin.formatter.model.*;
 import gherkin.util.Mapper;
 
@@ -32,7 +33,7 @@ import static gherkin.util.FixJava.map;
     private DescribedStatement statement;
 
     public WikiMarkupFormatter(Appendable out, Options options) {
-        this.out = new NiceAppendable(out);
+        this.out = NiceAppendable.of(out);
         this.options = options;
         this.formats = new WikiMarkup();
     }
@@ -52,18 +53,21 @@ import static gherkin.util.FixJava.map;
     @Override
     public void background(Background background) {
         replay();
+        out.flush(FlushPolicy.SCENARIO);
         statement = background;
     }
 
     @Override
     public void scenario(Scenario scenario) {
         replay();
+        out.flush(FlushPolicy.SCENARIO);
         statement = scenario;
     }
 
     @Override
     public void scenarioOutline(ScenarioOutline scenarioOutline) {
         replay();
+        out.flush(FlushPolicy.SCENARIO);
         statement = scenarioOutline;
     }
 
@@ -74,7 +78,7 @@ import static gherkin.util.FixJava.map;
 
     @Override
     public void endOfScenarioLifeCycle(Scenario scenario) {
-        // NoOp
+        out.flush(FlushPolicy.SCENARIO);
     }
 
     @Override
@@ -100,6 +104,7 @@ import static gherkin.util.FixJava.map;
 
     @Override
     public void done() {
+        out.flush(FlushPolicy.DONE);
     }
 
     @Override
@@ -193,6 +198,7 @@ import static gherkin.util.FixJava.map;
 
     public void eof() {
         replay();
+        out.flush(FlushPolicy.FEATURE);
     }
 
     private void printComments(List<Comment> comments, String indent) {
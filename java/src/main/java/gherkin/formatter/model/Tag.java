@@ -7,6 +7,8 @@ public class Tag extends Mappable {
 
     private final String name;
     private final Integer line;
+    // The id in TagSet, looked up the first time it is needed
+    private transient Integer id;
 
     public Tag(String name, Integer line) {
         this.name = name;
@@ -21,6 +23,13 @@ public class Tag extends Mappable {
         return line;
     }
 
+    int getId() {
+        if (id == null) {
+            id = TagSet.id(name);
+        }
+        return id;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
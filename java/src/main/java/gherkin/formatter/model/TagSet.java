@@ -0,0 +1,129 @@
+package gherkin.formatter.model;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A set of tag names as a bitset. Every tag name gets an id, the same for the whole JVM, which is its
+ * bit in every set. Testing a set against another takes a few word operations rather than comparing strings.
+ */
+public final class TagSet {
+    private static final ConcurrentMap<String, Integer> IDS = new ConcurrentHashMap<String, Integer>();
+    private static final AtomicInteger NEXT_ID = new AtomicInteger();
+    private static final long[] NO_WORDS = new long[0];
+
+    public static final TagSet EMPTY = new TagSet(NO_WORDS);
+
+    private final long[] words;
+
+    private TagSet(long[] words) {
+        this.words = words;
+    }
+
+    /**
+     * @return the id of the tag name, given to it the first time it is asked for.
+     */
+    public static int id(String name) {
+        Integer id = IDS.get(name);
+        if (id == null) {
+            Integer next = NEXT_ID.getAndIncrement();
+            id = IDS.putIfAbsent(name, next);
+            if (id == null) {
+                id = next;
+            }
+        }
+        return id;
+    }
+
+    public static TagSet of(Collection<Tag> tags) {
+        if (tags.isEmpty()) {
+            return EMPTY;
+        }
+        long[] words = NO_WORDS;
+        for (Tag tag : tags) {
+            if (tag.getName() == null) {
+                continue;
+            }
+            int id = tag.getId();
+            if (id >> 6 >= words.length) {
+                words = Arrays.copyOf(words, (id >> 6) + 1);
+            }
+            words[id >> 6] |= 1L << id;
+        }
+        return new TagSet(words);
+    }
+
+    public static TagSet ofNames(Collection<String> names) {
+        long[] words = NO_WORDS;
+        for (String name : names) {
+            int id = id(name);
+            if (id >> 6 >= words.length) {
+                words = Arrays.copyOf(words, (id >> 6) + 1);
+            }
+            words[id >> 6] |= 1L << id;
+        }
+        return words.length == 0 ? EMPTY : new TagSet(words);
+    }
+
+    /**
+     * @return the tags of both sets. One of the sets itself, if the other adds nothing to it.
+     */
+    public TagSet union(TagSet other) {
+        if (other.words.length == 0) {
+            return this;
+        }
+        if (words.length == 0) {
+            return other;
+        }
+        long[] longer = words.length >= other.words.length ? words : other.words;
+        long[] shorter = longer == words ? other.words : words;
+        long[] union = longer.clone();
+        for (int i = 0; i < shorter.length; i++) {
+            union[i] |= shorter[i];
+        }
+        return new TagSet(union);
+    }
+
+    public boolean contains(String name) {
+        Integer id = IDS.get(name);
+        return id != null && id >> 6 < words.length && (words[id >> 6] & 1L << id) != 0;
+    }
+
+    /**
+     * @return whether the sets have a tag in common.
+     */
+    public boolean intersects(TagSet other) {
+        int n = Math.min(words.length, other.words.length);
+        for (int i = 0; i < n; i++) {
+            if ((words[i] & other.words[i]) != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return whether this set has all the tags of the other.
+     */
+    public boolean containsAll(TagSet other) {
+        for (int i = 0; i < other.words.length; i++) {
+            long word = i < words.length ? words[i] : 0;
+            if ((other.words[i] & ~word) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public boolean isEmpty() {
+        for (long word : words) {
+            if (word != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -2,27 +2,35 @@
 // line 1 "ragel/i18n/cs.java.rl"
 package gherkin.lexer;
 
+import java.io.InputStream;
 import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
 import java.util.List;
 import java.util.ArrayList;
-import java.util.regex.Pattern;
+import java.util.Arrays;
 import gherkin.lexer.Lexer;
 import gherkin.lexer.Listener;
+import gherkin.lexer.TokenListener;
 import gherkin.lexer.LexingError;
 
 public class Cs implements Lexer {
   
-// line 150 "ragel/i18n/cs.java.rl"
+// line 168 "ragel/i18n/cs.java.rl"
 
 
-  private final Listener listener;
+  private final TokenListener listener;
 
   public Cs(Listener listener) {
+    this(new TokenListenerAdapter(listener));
+  }
+
+  public Cs(TokenListener listener) {
     this.listener = listener;
   }
 
   
-// line 26 "java/src/main/java/gherkin/lexer/Cs.java"
+// line 34 "java/src/main/java/gherkin/lexer/Cs.java"
 private static byte[] init__lexer_actions_0()
 {
 	return new byte [] {
@@ -642,21 +650,41 @@ static final int lexer_first_final = 478;
 static final int lexer_en_main = 1;
 
 
-// line 159 "ragel/i18n/cs.java.rl"
+// line 181 "ragel/i18n/cs.java.rl"
 
   public void scan(String source)  {
-    String input = source + "\n%_FEATURE_END_%";
     byte[] data = null;
     try {
-      data = input.getBytes("UTF-8");
+      data = source.getBytes("UTF-8");
     } catch(UnsupportedEncodingException e) {
       throw new RuntimeException(e);
     }
-    int cs, p = 0, pe = data.length;
-    int eof = pe;
+    scan(data, 0, data.length);
+  }
+
+  public void scan(byte[] source, int offset, int length) {
+    scan(new SourceBuffer(source, offset, length));
+  }
+
+  public void scan(ByteBuffer source) {
+    scan(SourceBuffer.of(source));
+  }
+
+  public void scan(InputStream source) {
+    scan(SourceBuffer.of(source));
+  }
+
+  public void scan(ReadableByteChannel source) {
+    scan(SourceBuffer.of(source));
+  }
+
+  private void scan(SourceBuffer buffer) {
+    byte[] data = buffer.data;
+    int cs, p = buffer.start, pe = buffer.end;
+    int eof = buffer.eof ? pe : -1;
 
     int lineNumber = 1;
-    int lastNewline = 0;
+    int lastNewline = p;
 
     int contentStart = -1;
     int currentLine = -1;
@@ -666,17 +694,19 @@ static final int lexer_en_main = 1;
     int nextKeywordStart = -1;
     int keywordStart = -1;
     String keyword = null;
-    List<String> currentRow = null;
+    int[] cells = new int[32]; // start and end of each cell in the current row
+    int cellCount = 0;
 
     
-// line 673 "java/src/main/java/gherkin/lexer/Cs.java"
+// line 702 "java/src/main/java/gherkin/lexer/Cs.java"
 	{
 	cs = lexer_start;
 	}
 
-// line 185 "ragel/i18n/cs.java.rl"
+// line 228 "ragel/i18n/cs.java.rl"
+    while(true) {
     
-// line 680 "java/src/main/java/gherkin/lexer/Cs.java"
+// line 710 "java/src/main/java/gherkin/lexer/Cs.java"
 	{
 	int _klen;
 	int _trans = 0;
@@ -757,7 +787,7 @@ case 1:
 			switch ( _lexer_actions[_acts++] )
 			{
 	case 0:
-// line 16 "ragel/i18n/cs.java.rl"
+// line 20 "ragel/i18n/cs.java.rl"
 	{
       contentStart = p;
       currentLine = lineNumber;
@@ -767,177 +797,191 @@ case 1:
     }
 	break;
 	case 1:
-// line 24 "ragel/i18n/cs.java.rl"
+// line 28 "ragel/i18n/cs.java.rl"
 	{
       currentLine = lineNumber;
       startCol = p - lastNewline;
     }
 	break;
 	case 2:
-// line 29 "ragel/i18n/cs.java.rl"
+// line 33 "ragel/i18n/cs.java.rl"
 	{
       contentStart = p;
     }
 	break;
 	case 3:
-// line 33 "ragel/i18n/cs.java.rl"
+// line 37 "ragel/i18n/cs.java.rl"
 	{
       docstringContentTypeStart = p;
     }
 	break;
 	case 4:
-// line 37 "ragel/i18n/cs.java.rl"
+// line 41 "ragel/i18n/cs.java.rl"
 	{
       docstringContentTypeEnd = p;
     }
 	break;
 	case 5:
-// line 41 "ragel/i18n/cs.java.rl"
+// line 45 "ragel/i18n/cs.java.rl"
 	{
-      String con = unindent(startCol, substring(data, contentStart, nextKeywordStart-1).replaceFirst("(\\r?\\n)?([\\t ])*\\Z", "").replace("\\\"\\\"\\\"", "\"\"\""));
-      String conType = substring(data, docstringContentTypeStart, docstringContentTypeEnd).trim();
+      Token con = new Token(data, contentStart, nextKeywordStart-1, Token.DOCSTRING, startCol);
+      Token conType = new Token(data, docstringContentTypeStart, docstringContentTypeEnd, Token.TRIMMED);
       listener.docString(conType, con, currentLine);
+      contentStart = -1;
+      docstringContentTypeStart = -1;
+      docstringContentTypeEnd = -1;
     }
 	break;
 	case 6:
-// line 47 "ragel/i18n/cs.java.rl"
+// line 54 "ragel/i18n/cs.java.rl"
 	{
-      String[] nameDescription = nameAndUnindentedDescription(startCol, keywordContent(data, p, eof, nextKeywordStart, contentStart));
-      listener.feature(keyword, nameDescription[0], nameDescription[1], currentLine);
+      int contentEnd = keywordContentEnd(p, eof, nextKeywordStart);
+      listener.feature(keyword, new Token(data, contentStart, contentEnd, Token.NAME, startCol), new Token(data, contentStart, contentEnd, Token.DESCRIPTION, startCol), currentLine);
       if(nextKeywordStart != -1) p = nextKeywordStart - 1;
       nextKeywordStart = -1;
+      contentStart = -1;
     }
 	break;
 	case 7:
-// line 54 "ragel/i18n/cs.java.rl"
+// line 62 "ragel/i18n/cs.java.rl"
 	{
-      String[] nameDescription = nameAndUnindentedDescription(startCol, keywordContent(data, p, eof, nextKeywordStart, contentStart));
-      listener.background(keyword, nameDescription[0], nameDescription[1], currentLine);
+      int contentEnd = keywordContentEnd(p, eof, nextKeywordStart);
+      listener.background(keyword, new Token(data, contentStart, contentEnd, Token.NAME, startCol), new Token(data, contentStart, contentEnd, Token.DESCRIPTION, startCol), currentLine);
       if(nextKeywordStart != -1) p = nextKeywordStart - 1;
       nextKeywordStart = -1;
+      contentStart = -1;
     }
 	break;
 	case 8:
-// line 61 "ragel/i18n/cs.java.rl"
+// line 70 "ragel/i18n/cs.java.rl"
 	{
-      String[] nameDescription = nameAndUnindentedDescription(startCol, keywordContent(data, p, eof, nextKeywordStart, contentStart));
-      listener.scenario(keyword, nameDescription[0], nameDescription[1], currentLine);
+      int contentEnd = keywordContentEnd(p, eof, nextKeywordStart);
+      listener.scenario(keyword, new Token(data, contentStart, contentEnd, Token.NAME, startCol), new Token(data, contentStart, contentEnd, Token.DESCRIPTION, startCol), currentLine);
       if(nextKeywordStart != -1) p = nextKeywordStart - 1;
       nextKeywordStart = -1;
+      contentStart = -1;
     }
 	break;
 	case 9:
-// line 68 "ragel/i18n/cs.java.rl"
+// line 78 "ragel/i18n/cs.java.rl"
 	{
-      String[] nameDescription = nameAndUnindentedDescription(startCol, keywordContent(data, p, eof, nextKeywordStart, contentStart));
-      listener.scenarioOutline(keyword, nameDescription[0], nameDescription[1], currentLine);
+      int contentEnd = keywordContentEnd(p, eof, nextKeywordStart);
+      listener.scenarioOutline(keyword, new Token(data, contentStart, contentEnd, Token.NAME, startCol), new Token(data, contentStart, contentEnd, Token.DESCRIPTION, startCol), currentLine);
       if(nextKeywordStart != -1) p = nextKeywordStart - 1;
       nextKeywordStart = -1;
+      contentStart = -1;
     }
 	break;
 	case 10:
-// line 75 "ragel/i18n/cs.java.rl"
+// line 86 "ragel/i18n/cs.java.rl"
 	{
-      String[] nameDescription = nameAndUnindentedDescription(startCol, keywordContent(data, p, eof, nextKeywordStart, contentStart));
-      listener.examples(keyword, nameDescription[0], nameDescription[1], currentLine);
+      int contentEnd = keywordContentEnd(p, eof, nextKeywordStart);
+      listener.examples(keyword, new Token(data, contentStart, contentEnd, Token.NAME, startCol), new Token(data, contentStart, contentEnd, Token.DESCRIPTION, startCol), currentLine);
       if(nextKeywordStart != -1) p = nextKeywordStart - 1;
       nextKeywordStart = -1;
+      contentStart = -1;
     }
 	break;
 	case 11:
-// line 82 "ragel/i18n/cs.java.rl"
+// line 94 "ragel/i18n/cs.java.rl"
 	{
-      listener.step(keyword, substring(data, contentStart, p).trim(), currentLine);
+      listener.step(keyword, new Token(data, contentStart, p, Token.TRIMMED), currentLine);
+      contentStart = -1;
     }
 	break;
 	case 12:
-// line 86 "ragel/i18n/cs.java.rl"
+// line 99 "ragel/i18n/cs.java.rl"
 	{
-      listener.comment(substring(data, contentStart, p).trim(), lineNumber);
+      listener.comment(new Token(data, contentStart, p, Token.TRIMMED), lineNumber);
       keywordStart = -1;
+      contentStart = -1;
     }
 	break;
 	case 13:
-// line 91 "ragel/i18n/cs.java.rl"
+// line 105 "ragel/i18n/cs.java.rl"
 	{
-      listener.tag(substring(data, contentStart, p).trim(), currentLine);
+      listener.tag(new Token(data, contentStart, p, Token.TRIMMED), currentLine);
       keywordStart = -1;
+      contentStart = -1;
     }
 	break;
 	case 14:
-// line 96 "ragel/i18n/cs.java.rl"
+// line 111 "ragel/i18n/cs.java.rl"
 	{
       lineNumber++;
     }
 	break;
 	case 15:
-// line 100 "ragel/i18n/cs.java.rl"
+// line 115 "ragel/i18n/cs.java.rl"
 	{
       lastNewline = p + 1;
     }
 	break;
 	case 16:
-// line 104 "ragel/i18n/cs.java.rl"
+// line 119 "ragel/i18n/cs.java.rl"
 	{
       if(keywordStart == -1) keywordStart = p;
     }
 	break;
 	case 17:
-// line 108 "ragel/i18n/cs.java.rl"
+// line 123 "ragel/i18n/cs.java.rl"
 	{
-      keyword = substring(data, keywordStart, p).replaceFirst(":$","");
+      keyword = substring(data, keywordStart, data[p-1] == ':' ? p-1 : p);
       keywordStart = -1;
     }
 	break;
 	case 18:
-// line 113 "ragel/i18n/cs.java.rl"
+// line 128 "ragel/i18n/cs.java.rl"
 	{
       nextKeywordStart = p;
     }
 	break;
 	case 19:
-// line 117 "ragel/i18n/cs.java.rl"
+// line 132 "ragel/i18n/cs.java.rl"
 	{
       p = p - 1;
-      currentRow = new ArrayList<String>();
+      cellCount = 0;
       currentLine = lineNumber;
     }
 	break;
 	case 20:
-// line 123 "ragel/i18n/cs.java.rl"
+// line 138 "ragel/i18n/cs.java.rl"
 	{
       contentStart = p;
     }
 	break;
 	case 21:
-// line 127 "ragel/i18n/cs.java.rl"
+// line 142 "ragel/i18n/cs.java.rl"
 	{
-      String con = substring(data, contentStart, p).trim();
-      currentRow.add(con
-        .replace("\\|", "|")
-        .replace("\\n", "\n")
-        .replace("\\\\", "\\")
-      );
+      if(cellCount == cells.length) cells = Arrays.copyOf(cells, cellCount * 2);
+      cells[cellCount++] = contentStart;
+      cells[cellCount++] = p;
+      contentStart = -1;
     }
 	break;
 	case 22:
-// line 136 "ragel/i18n/cs.java.rl"
+// line 149 "ragel/i18n/cs.java.rl"
 	{
-      listener.row(currentRow, currentLine);
+      List<CharSequence> row = new ArrayList<CharSequence>(cellCount / 2);
+      for(int i = 0; i < cellCount; i += 2) {
+        row.add(new Token(data, cells[i], cells[i + 1], Token.CELL));
+      }
+      listener.row(row, currentLine);
+      cellCount = 0;
     }
 	break;
 	case 23:
-// line 140 "ragel/i18n/cs.java.rl"
+// line 158 "ragel/i18n/cs.java.rl"
 	{
       if(cs < lexer_first_final) {
-        String content = currentLineContent(data, lastNewline);
+        String content = buffer.line(lastNewline).trim();
         throw new LexingError("Lexing error on line " + lineNumber + ": '" + content + "'. See http://wiki.github.com/cucumber/gherkin/lexingerror for more information.");
       } else {
         listener.eof();
       }
     }
 	break;
-// line 941 "java/src/main/java/gherkin/lexer/Cs.java"
+// line 985 "java/src/main/java/gherkin/lexer/Cs.java"
 			}
 		}
 	}
@@ -959,17 +1003,17 @@ case 4:
 	while ( __nacts-- > 0 ) {
 		switch ( _lexer_actions[__acts++] ) {
 	case 23:
-// line 140 "ragel/i18n/cs.java.rl"
+// line 158 "ragel/i18n/cs.java.rl"
 	{
       if(cs < lexer_first_final) {
-        String content = currentLineContent(data, lastNewline);
+        String content = buffer.line(lastNewline).trim();
         throw new LexingError("Lexing error on line " + lineNumber + ": '" + content + "'. See http://wiki.github.com/cucumber/gherkin/lexingerror for more information.");
       } else {
         listener.eof();
       }
     }
 	break;
-// line 973 "java/src/main/java/gherkin/lexer/Cs.java"
+// line 1017 "java/src/main/java/gherkin/lexer/Cs.java"
 		}
 	}
 	}
@@ -979,31 +1023,32 @@ case 5:
 	break; }
 	}
 
-// line 186 "ragel/i18n/cs.java.rl"
-  }
+// line 230 "ragel/i18n/cs.java.rl"
+      if(p == eof || p != pe) break;
 
-  private String keywordContent(byte[] data, int p, int eof, int nextKeywordStart, int contentStart) {
-    int endPoint = (nextKeywordStart == -1 || (p == eof)) ? p : nextKeywordStart;
-    return substring(data, contentStart, endPoint);
-  }
-
-  private String[] nameAndUnindentedDescription(int startCol, String text) {
-    String[] lines = text.split("\n");
-    String name = lines.length > 0 ? lines[0].trim() : "";
-    StringBuffer description = new StringBuffer();
-    for(int i = 1; i < lines.length; i++) {
-      description.append(lines[i]);
-      description.append("\n");
+      // Out of input. Keep the bytes of the token being lexed and read some more.
+      int keep = lastNewline;
+      if(keywordStart != -1 && keywordStart < keep) keep = keywordStart;
+      if(contentStart != -1 && contentStart < keep) keep = contentStart;
+      if(docstringContentTypeStart != -1 && docstringContentTypeStart < keep) keep = docstringContentTypeStart;
+      if(cellCount > 0 && cells[0] < keep) keep = cells[0];
+      int shift = buffer.fill(keep);
+      data = buffer.data;
+      p -= shift;
+      pe = buffer.end;
+      eof = buffer.eof ? pe : -1;
+      lastNewline -= shift;
+      keywordStart = keywordStart < keep ? -1 : keywordStart - shift;
+      contentStart = contentStart < keep ? -1 : contentStart - shift;
+      nextKeywordStart = nextKeywordStart < keep ? -1 : nextKeywordStart - shift;
+      docstringContentTypeStart = docstringContentTypeStart < keep ? -1 : docstringContentTypeStart - shift;
+      docstringContentTypeEnd = docstringContentTypeEnd < keep ? -1 : docstringContentTypeEnd - shift;
+      for(int i = 0; i < cellCount; i++) cells[i] -= shift;
     }
-    return new String[]{name, unindent(startCol+2, description.toString()).replaceAll("\\s+$", "")};
-  }
-
-  private String unindent(int startCol, String text) {
-    return Pattern.compile("^[\t ]{0," + startCol + "}", Pattern.MULTILINE).matcher(text).replaceAll("");
   }
 
-  private String currentLineContent(byte[] data, int lastNewline) {
-    return substring(data, lastNewline, data.length).trim();
+  private int keywordContentEnd(int p, int eof, int nextKeywordStart) {
+    return (nextKeywordStart == -1 || (p == eof)) ? p : nextKeywordStart;
   }
 
   private String substring(byte[] data, int start, int end) {
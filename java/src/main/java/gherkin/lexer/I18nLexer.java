@@ -2,13 +2,17 @@ package gherkin.lexer;
 
 import gherkin.I18n;
 
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.util.Arrays;
 
 public class I18nLexer implements Lexer {
-    private static final Pattern COMMENT_OR_EMPTY_LINE_PATTERN = Pattern.compile("^([\\W]+)?\\s*#|^\\s*$");
-    private static final Pattern LANGUAGE_PATTERN = Pattern.compile("^([\\W]+)?\\s*#\\s*language\\s*:\\s*([a-zA-Z\\-]+)");
-    private final Listener listener;
+    private final TokenListener listener;
     private I18n i18n;
     private String isoCode;
 
@@ -21,6 +25,10 @@ public class I18nLexer implements Lexer {
     }
 
     public I18nLexer(Listener listener, boolean forceRubyDummy, String isoCode) {
+        this(new TokenListenerAdapter(listener), isoCode);
+    }
+
+    public I18nLexer(TokenListener listener, String isoCode) {
         this.listener = listener;
         this.isoCode = isoCode;
     }
@@ -33,26 +41,59 @@ public class I18nLexer implements Lexer {
     }
 
     public void scan(String source) {
-        createDelegate(source).scan(source);
+        createDelegate(LanguageSniffer.language(source)).scan(source);
     }
 
-    private Lexer createDelegate(String source) {
-        i18n = i18nLanguageForSource(source);
-        return i18n.lexer(listener);
+    public void scan(byte[] source, int offset, int length) {
+        createDelegate(LanguageSniffer.language(source, offset, length)).scan(source, offset, length);
     }
 
-    private I18n i18nLanguageForSource(String source) {
-        String key = isoCode;
-        for (String line : source.split("\\n")) {
-            if (!COMMENT_OR_EMPTY_LINE_PATTERN.matcher(line).find()) {
-                break;
-            }
-            Matcher matcher = LANGUAGE_PATTERN.matcher(line);
-            if (matcher.find()) {
-                key = matcher.group(2);
-                break;
+    public void scan(ByteBuffer source) {
+        createDelegate(LanguageSniffer.language(source)).scan(source);
+    }
+
+    public void scan(InputStream source) {
+        byte[] header = readHeader(source);
+        createDelegate(LanguageSniffer.language(header, 0, header.length)).scan(new SequenceInputStream(new ByteArrayInputStream(header), source));
+    }
+
+    public void scan(ReadableByteChannel source) {
+        scan(Channels.newInputStream(source));
+    }
+
+    /**
+     * Reads the leading comment and blank lines, which is where the language is declared,
+     * and the first line after them.
+     */
+    private byte[] readHeader(InputStream source) {
+        try {
+            byte[] header = new byte[256];
+            int length = 0;
+            int lineStart = 0;
+            int b;
+            while ((b = source.read()) != -1) {
+                if (length == header.length) {
+                    header = Arrays.copyOf(header, length * 2);
+                }
+                header[length++] = (byte) b;
+                if (b == '\n') {
+                    if (LanguageSniffer.endsHeader(header, lineStart, length - 1)) {
+                        break;
+                    }
+                    lineStart = length;
+                }
             }
+            return Arrays.copyOf(header, length);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
         }
-        return new I18n(key);
+    }
+
+    /**
+     * @param language the language declared in the source, or null to use the default.
+     */
+    private Lexer createDelegate(String language) {
+        i18n = I18n.forIsoCode(language != null ? language : isoCode);
+        return i18n.lexer(listener);
     }
 }
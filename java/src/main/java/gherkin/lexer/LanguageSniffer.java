@@ -0,0 +1,209 @@
+package gherkin.lexer;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Finds the <code># language: xx</code> comment in the header of a feature, which is the leading
+ * comment and blank lines. The header is scanned in place, one line at a time, and the scan
+ * stops at the first line that isn't a comment or blank, so the rest of the source is never read.
+ * <p>
+ * A line is a comment if it has a <code>#</code> before any word character, and blank if it only
+ * has whitespace. Bytes are UTF-8, where every non-ASCII character is neither a word character,
+ * whitespace nor <code>#</code>, so they don't need to be decoded.
+ */
+abstract class LanguageSniffer {
+    private static final String LANGUAGE = "language";
+
+    /**
+     * @return the declared language, or null if there is none.
+     */
+    static String language(CharSequence source) {
+        LanguageSniffer sniffer = new Chars(source);
+        return sniffer.sniff();
+    }
+
+    /**
+     * @return the declared language, or null if there is none.
+     */
+    static String language(byte[] source, int offset, int length) {
+        return language(ByteBuffer.wrap(source, offset, length));
+    }
+
+    /**
+     * @return the declared language, or null if there is none. The position of the buffer isn't changed.
+     */
+    static String language(ByteBuffer source) {
+        LanguageSniffer sniffer = new Bytes(source.slice());
+        return sniffer.sniff();
+    }
+
+    /**
+     * @param end the index of the '\n' ending the line, or the end of the source.
+     * @return whether the header ends with the line, either because it declares the language or because it isn't part of the header.
+     */
+    static boolean endsHeader(byte[] source, int start, int end) {
+        LanguageSniffer sniffer = new Bytes(ByteBuffer.wrap(source));
+        return !sniffer.isCommentOrBlank(start, end) || sniffer.declaredLanguage(start, end) != null;
+    }
+
+    abstract int length();
+
+    /**
+     * @return the char, or unsigned byte, at the index.
+     */
+    abstract int at(int index);
+
+    /**
+     * @return the length of a NEL, LS or PS line separator ending the line, or 0.
+     */
+    abstract int trailingSeparator(int start, int end);
+
+    private String sniff() {
+        int length = length();
+        int start = 0;
+        while (start < length) {
+            int end = start;
+            while (end < length && at(end) != '\n') {
+                end++;
+            }
+            if (!isCommentOrBlank(start, end)) {
+                return null;
+            }
+            String language = declaredLanguage(start, end);
+            if (language != null) {
+                return language;
+            }
+            start = end + 1;
+        }
+        return null;
+    }
+
+    private boolean isCommentOrBlank(int start, int end) {
+        for (int i = start; i < end; i++) {
+            int c = at(i);
+            if (c == '#') {
+                return true;
+            }
+            if (isWordChar(c)) {
+                return false;
+            }
+        }
+        int blankEnd = end - trailingSeparator(start, end);
+        for (int i = start; i < blankEnd; i++) {
+            if (!isWhitespace(at(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private String declaredLanguage(int start, int end) {
+        // Any '#' before the first word character may start the declaration, as in "# # language: fr".
+        for (int i = start; i < end; i++) {
+            int c = at(i);
+            if (c == '#') {
+                String language = declaration(i + 1, end);
+                if (language != null) {
+                    return language;
+                }
+            } else if (isWordChar(c)) {
+                return null;
+            }
+        }
+        return null;
+    }
+
+    private String declaration(int i, int end) {
+        i = skipWhitespace(i, end);
+        if (end - i < LANGUAGE.length()) {
+            return null;
+        }
+        for (int k = 0; k < LANGUAGE.length(); k++) {
+            if (at(i + k) != LANGUAGE.charAt(k)) {
+                return null;
+            }
+        }
+        i = skipWhitespace(i + LANGUAGE.length(), end);
+        if (i == end || at(i) != ':') {
+            return null;
+        }
+        i = skipWhitespace(i + 1, end);
+        StringBuilder language = new StringBuilder();
+        for (; i < end && isLanguageChar(at(i)); i++) {
+            language.append((char) at(i));
+        }
+        return language.length() == 0 ? null : language.toString();
+    }
+
+    private int skipWhitespace(int i, int end) {
+        while (i < end && isWhitespace(at(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    private static boolean isWordChar(int c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_';
+    }
+
+    private static boolean isWhitespace(int c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == 0x0B || c == '\f' || c == '\r';
+    }
+
+    private static boolean isLanguageChar(int c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || c == '-';
+    }
+
+    private static class Chars extends LanguageSniffer {
+        private final CharSequence source;
+
+        private Chars(CharSequence source) {
+            this.source = source;
+        }
+
+        int length() {
+            return source.length();
+        }
+
+        int at(int index) {
+            return source.charAt(index);
+        }
+
+        int trailingSeparator(int start, int end) {
+            if (end > start) {
+                char c = source.charAt(end - 1);
+                if (c == '\u0085' || c == '\u2028' || c == '\u2029') {
+                    return 1;
+                }
+            }
+            return 0;
+        }
+    }
+
+    private static class Bytes extends LanguageSniffer {
+        private final ByteBuffer source;
+
+        private Bytes(ByteBuffer source) {
+            this.source = source;
+        }
+
+        int length() {
+            return source.limit();
+        }
+
+        int at(int index) {
+            return source.get(index) & 0xFF;
+        }
+
+        int trailingSeparator(int start, int end) {
+            // NEL is C2 85, LS is E2 80 A8 and PS is E2 80 A9 in UTF-8.
+            if (end - start >= 2 && at(end - 2) == 0xC2 && at(end - 1) == 0x85) {
+                return 2;
+            }
+            if (end - start >= 3 && at(end - 3) == 0xE2 && at(end - 2) == 0x80 && (at(end - 1) == 0xA8 || at(end - 1) == 0xA9)) {
+                return 3;
+            }
+            return 0;
+        }
+    }
+}
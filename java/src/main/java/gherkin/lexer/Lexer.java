@@ -1,5 +1,9 @@
 package gherkin.lexer;
 
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+
 public interface Lexer {
     /**
      * Lexes the source.
@@ -7,4 +11,37 @@ public interface Lexer {
      * @param source a string containing Gherkin source.
      */
     public void scan(String source);
+
+    /**
+     * Lexes the source in place, without decoding it to a String first.
+     *
+     * @param source UTF-8 encoded Gherkin source. The array is not modified.
+     * @param offset where the source starts in the array.
+     * @param length the length of the source in bytes.
+     */
+    public void scan(byte[] source, int offset, int length);
+
+    /**
+     * Lexes the remaining bytes of the buffer. Heap buffers are lexed in place. Direct buffers,
+     * such as a {@link java.nio.MappedByteBuffer} of a feature file, are lexed a chunk at a time.
+     *
+     * @param source UTF-8 encoded Gherkin source. The buffer's position is not changed.
+     */
+    public void scan(ByteBuffer source);
+
+    /**
+     * Lexes the source as it is read. Only the bytes of the token being lexed are held in memory,
+     * so this is the preferred way to lex large sources.
+     *
+     * @param source a stream of UTF-8 encoded Gherkin source. It is read to the end, but not closed.
+     */
+    public void scan(InputStream source);
+
+    /**
+     * Lexes the source as it is read.
+     *
+     * @param source a blocking channel of UTF-8 encoded Gherkin source. It is read to the end, but not closed.
+     * @see #scan(java.io.InputStream)
+     */
+    public void scan(ReadableByteChannel source);
 }
@@ -0,0 +1,197 @@
+package gherkin.lexer;
+
+import java.util.Arrays;
+
+/**
+ * Creates the lexer for a language without reflection.
+ * Generated from lib/gherkin/i18n.json by tasks/compile.rake. Don't edit.
+ */
+public class LexerFactory {
+    // Sorted, so the index of a language can be found with a binary search.
+    private static final String[] UNDERSCORED_ISO_CODES = {
+        "ar",
+        "bg",
+        "bm",
+        "ca",
+        "cs",
+        "cy_gb",
+        "da",
+        "de",
+        "el",
+        "en",
+        "en_au",
+        "en_lol",
+        "en_old",
+        "en_pirate",
+        "en_scouse",
+        "en_tx",
+        "eo",
+        "es",
+        "et",
+        "fa",
+        "fi",
+        "fr",
+        "gl",
+        "he",
+        "hi",
+        "hr",
+        "hu",
+        "id",
+        "is",
+        "it",
+        "ja",
+        "kn",
+        "ko",
+        "lt",
+        "lu",
+        "lv",
+        "nl",
+        "no",
+        "pa",
+        "pl",
+        "pt",
+        "ro",
+        "ru",
+        "sk",
+        "sr_cyrl",
+        "sr_latn",
+        "sv",
+        "th",
+        "tl",
+        "tr",
+        "tt",
+        "uk",
+        "uz",
+        "vi",
+        "zh_cn",
+        "zh_tw"
+    };
+
+    public static boolean hasLexer(String underscoredIsoCode) {
+        return Arrays.binarySearch(UNDERSCORED_ISO_CODES, underscoredIsoCode) >= 0;
+    }
+
+    public static Lexer lexer(String underscoredIsoCode, Listener listener) {
+        return lexer(underscoredIsoCode, new TokenListenerAdapter(listener));
+    }
+
+    public static Lexer lexer(String underscoredIsoCode, TokenListener listener) {
+        switch (Arrays.binarySearch(UNDERSCORED_ISO_CODES, underscoredIsoCode)) {
+            case 0:
+                return new Ar(listener);
+            case 1:
+                return new Bg(listener);
+            case 2:
+                return new Bm(listener);
+            case 3:
+                return new Ca(listener);
+            case 4:
+                return new Cs(listener);
+            case 5:
+                return new Cy_gb(listener);
+            case 6:
+                return new Da(listener);
+            case 7:
+                return new De(listener);
+            case 8:
+                return new El(listener);
+            case 9:
+                return new En(listener);
+            case 10:
+                return new En_au(listener);
+            case 11:
+                return new En_lol(listener);
+            case 12:
+                return new En_old(listener);
+            case 13:
+                return new En_pirate(listener);
+            case 14:
+                return new En_scouse(listener);
+            case 15:
+                return new En_tx(listener);
+            case 16:
+                return new Eo(listener);
+            case 17:
+                return new Es(listener);
+            case 18:
+                return new Et(listener);
+            case 19:
+                return new Fa(listener);
+            case 20:
+                return new Fi(listener);
+            case 21:
+                return new Fr(listener);
+            case 22:
+                return new Gl(listener);
+            case 23:
+                return new He(listener);
+            case 24:
+                return new Hi(listener);
+            case 25:
+                return new Hr(listener);
+            case 26:
+                return new Hu(listener);
+            case 27:
+                return new Id(listener);
+            case 28:
+                return new Is(listener);
+            case 29:
+                return new It(listener);
+            case 30:
+                return new Ja(listener);
+            case 31:
+                return new Kn(listener);
+            case 32:
+                return new Ko(listener);
+            case 33:
+                return new Lt(listener);
+            case 34:
+                return new Lu(listener);
+            case 35:
+                return new Lv(listener);
+            case 36:
+                return new Nl(listener);
+            case 37:
+                return new No(listener);
+            case 38:
+                return new Pa(listener);
+            case 39:
+                return new Pl(listener);
+            case 40:
+                return new Pt(listener);
+            case 41:
+                return new Ro(listener);
+            case 42:
+                return new Ru(listener);
+            case 43:
+                return new Sk(listener);
+            case 44:
+                return new Sr_cyrl(listener);
+            case 45:
+                return new Sr_latn(listener);
+            case 46:
+                return new Sv(listener);
+            case 47:
+                return new Th(listener);
+            case 48:
+                return new Tl(listener);
+            case 49:
+                return new Tr(listener);
+            case 50:
+                return new Tt(listener);
+            case 51:
+                return new Uk(listener);
+            case 52:
+                return new Uz(listener);
+            case 53:
+                return new Vi(listener);
+            case 54:
+                return new Zh_cn(listener);
+            case 55:
+                return new Zh_tw(listener);
+            default:
+                throw new RuntimeException("Couldn't load lexer class: gherkin.lexer."
+                        + underscoredIsoCode.substring(0, 1).toUpperCase() + underscoredIsoCode.substring(1));
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package gherkin.lexer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * The window of UTF-8 bytes a generated lexer is scanning. Sources are consumed in chunks:
+ * when the lexer reaches the end of the window it calls {@link #fill(int)}, which keeps the
+ * bytes of the token being lexed and reads more. Peak memory is bounded by the size of the
+ * largest token rather than by the size of the source.
+ * <p>
+ * Once the source is exhausted the EOF marker expected by the lexers' state machines is
+ * appended to the window and {@link #eof} is set.
+ */
+class SourceBuffer {
+    static final int CHUNK_SIZE = 0x10000;
+    private static final byte[] FEATURE_END = bytes("\n%_FEATURE_END_%");
+
+    byte[] data;
+    int start;
+    int end;
+    boolean eof;
+
+    private boolean owned;
+    private boolean exhausted;
+
+    /**
+     * A buffer over bytes that are already in memory. The bytes are scanned in place and
+     * never modified.
+     */
+    SourceBuffer(byte[] data, int offset, int length) {
+        this.data = data;
+        this.start = offset;
+        this.end = offset + length;
+        this.exhausted = true;
+    }
+
+    private SourceBuffer() {
+        this.data = new byte[CHUNK_SIZE];
+        this.owned = true;
+    }
+
+    static SourceBuffer of(final InputStream in) {
+        return new SourceBuffer() {
+            @Override
+            protected int read(byte[] b, int off, int len) throws IOException {
+                return in.read(b, off, len);
+            }
+        };
+    }
+
+    /**
+     * Buffers backed by an accessible array are scanned in place, others (such as memory-mapped
+     * buffers) are copied a chunk at a time. The position of the buffer is not changed.
+     */
+    static SourceBuffer of(ByteBuffer source) {
+        if (source.hasArray()) {
+            return new SourceBuffer(source.array(), source.arrayOffset() + source.position(), source.remaining());
+        }
+        return of(new ByteBufferInputStream(source.duplicate()));
+    }
+
+    static SourceBuffer of(final ReadableByteChannel in) {
+        return new SourceBuffer() {
+            @Override
+            protected int read(byte[] b, int off, int len) throws IOException {
+                return in.read(ByteBuffer.wrap(b, off, len));
+            }
+        };
+    }
+
+    /**
+     * Reads more of the source into the window.
+     *
+     * @param keep the position of the first byte the lexer still needs. Everything before it is discarded.
+     * @return how many positions the retained bytes have moved towards the start of {@link #data}.
+     *         Lexers must subtract this from every position they hold.
+     */
+    int fill(int keep) {
+        int retained = end - keep;
+        int capacity = exhausted ? retained + FEATURE_END.length : Math.max(CHUNK_SIZE, retained * 2);
+        if (owned && capacity <= data.length) {
+            System.arraycopy(data, keep, data, 0, retained);
+        } else {
+            byte[] grown = new byte[capacity];
+            System.arraycopy(data, keep, grown, 0, retained);
+            data = grown;
+            owned = true;
+        }
+        start = 0;
+        end = retained;
+        if (!exhausted) {
+            try {
+                int n;
+                do {
+                    n = read(data, end, data.length - end);
+                } while (n == 0);
+                if (n == -1) {
+                    exhausted = true;
+                } else {
+                    end += n;
+                }
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+        if (exhausted) {
+            if (data.length < end + FEATURE_END.length) {
+                byte[] grown = new byte[end + FEATURE_END.length];
+                System.arraycopy(data, 0, grown, 0, end);
+                data = grown;
+            }
+            System.arraycopy(FEATURE_END, 0, data, end, FEATURE_END.length);
+            end += FEATURE_END.length;
+            eof = true;
+        }
+        return keep;
+    }
+
+    /**
+     * @return the line starting at lineStart, reading ahead in the source if the window doesn't contain all of it.
+     */
+    String line(int lineStart) {
+        int pos = lineStart;
+        while (true) {
+            while (pos < end && data[pos] != '\n') {
+                pos++;
+            }
+            if (pos < end || eof) {
+                return string(data, lineStart, pos);
+            }
+            int shift = fill(lineStart);
+            lineStart -= shift;
+            pos -= shift;
+        }
+    }
+
+    protected int read(byte[] b, int off, int len) throws IOException {
+        return -1;
+    }
+
+    private static String string(byte[] data, int start, int end) {
+        try {
+            return new String(data, start, end - start, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new RuntimeException("Internal error", e);
+        }
+    }
+
+    private static byte[] bytes(String s) {
+        try {
+            return s.getBytes("UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new RuntimeException("Internal error", e);
+        }
+    }
+}
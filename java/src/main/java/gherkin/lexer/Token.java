@@ -0,0 +1,198 @@
+package gherkin.lexer;
+
+import java.util.regex.Pattern;
+
+/**
+ * The value of a token, as a view over the bytes the lexer is scanning. The bytes are decoded
+ * the first time the value is read.
+ *
+ * @see TokenListener
+ */
+final class Token implements CharSequence {
+    static final int TRIMMED = 0;
+    static final int CELL = 1;
+    static final int NAME = 2;
+    static final int DESCRIPTION = 3;
+    static final int DOCSTRING = 4;
+
+    private static final Pattern DOCSTRING_TRAILER = Pattern.compile("(\\r?\\n)?([\\t ])*\\Z");
+
+    private final byte[] data;
+    private final int start;
+    private final int end;
+    private final int kind;
+    private final int startCol;
+    private String value;
+
+    Token(byte[] data, int start, int end, int kind) {
+        this(data, start, end, kind, 0);
+    }
+
+    /**
+     * @param startCol the column of the keyword, for descriptions and docstrings that are unindented relative to it.
+     */
+    Token(byte[] data, int start, int end, int kind, int startCol) {
+        this.data = data;
+        this.start = start;
+        this.end = end;
+        this.kind = kind;
+        this.startCol = startCol;
+    }
+
+    public int length() {
+        return toString().length();
+    }
+
+    public char charAt(int index) {
+        return toString().charAt(index);
+    }
+
+    public CharSequence subSequence(int start, int end) {
+        return toString().subSequence(start, end);
+    }
+
+    @Override
+    public String toString() {
+        if (value == null) {
+            value = decode();
+        }
+        return value;
+    }
+
+    private String decode() {
+        switch (kind) {
+            case TRIMMED:
+                return trimmed(start, end);
+            case CELL:
+                return unescape(trimmed(start, end));
+            case NAME:
+                return trimmed(start, lineEnd());
+            case DESCRIPTION:
+                int lineEnd = lineEnd();
+                if (lineEnd == end) {
+                    return "";
+                }
+                return trimTrailingWhitespace(unindent(startCol + 2, substring(data, lineEnd + 1, end)));
+            case DOCSTRING:
+                String text = DOCSTRING_TRAILER.matcher(substring(data, start, end)).replaceFirst("");
+                return unindent(startCol, replace(text, "\\\"\\\"\\\"", "\"\"\""));
+            default:
+                throw new IllegalStateException("Unknown token kind: " + kind);
+        }
+    }
+
+    private int lineEnd() {
+        int pos = start;
+        while (pos < end && data[pos] != '\n') {
+            pos++;
+        }
+        return pos;
+    }
+
+    /**
+     * Same as {@link String#trim()}. Characters up to and including space are single bytes in UTF-8,
+     * so the bytes can be trimmed before they are decoded.
+     */
+    private String trimmed(int from, int to) {
+        while (from < to && (data[from] & 0xff) <= ' ') {
+            from++;
+        }
+        while (to > from && (data[to - 1] & 0xff) <= ' ') {
+            to--;
+        }
+        return substring(data, from, to);
+    }
+
+    private static String unescape(String cell) {
+        if (cell.indexOf('\\') == -1) {
+            return cell;
+        }
+        return replace(replace(replace(cell, "\\|", "|"), "\\n", "\n"), "\\\\", "\\");
+    }
+
+    /**
+     * Removes up to startCol spaces and tabs from the start of every line, like
+     * <code>Pattern.compile("^[\t ]{0," + startCol + "}", Pattern.MULTILINE).matcher(text).replaceAll("")</code>.
+     */
+    private static String unindent(int startCol, String text) {
+        int length = text.length();
+        StringBuilder result = null;
+        int copied = 0;
+        int i = 0;
+        while (i < length) {
+            if (i == 0 || isLineStart(text, i)) {
+                int indentEnd = i;
+                while (indentEnd < length && indentEnd - i < startCol && isIndent(text.charAt(indentEnd))) {
+                    indentEnd++;
+                }
+                if (indentEnd > i) {
+                    if (result == null) {
+                        result = new StringBuilder(length);
+                    }
+                    result.append(text, copied, i);
+                    copied = indentEnd;
+                    i = indentEnd;
+                    continue;
+                }
+            }
+            i++;
+        }
+        if (result == null) {
+            return text;
+        }
+        return result.append(text, copied, length).toString();
+    }
+
+    // Where a MULTILINE ^ matches: after any line terminator, with \r\n counting as one.
+    private static boolean isLineStart(String text, int i) {
+        char previous = text.charAt(i - 1);
+        if (previous == '\r') {
+            return text.charAt(i) != '\n';
+        }
+        return previous == '\n' || previous == '\u0085' || previous == '\u2028' || previous == '\u2029';
+    }
+
+    private static boolean isIndent(char c) {
+        return c == ' ' || c == '\t';
+    }
+
+    // Same as replaceAll("\\s+$", "") on text with a newline appended
+    private static String trimTrailingWhitespace(String text) {
+        int end = text.length();
+        while (end > 0 && isWhitespace(text.charAt(end - 1))) {
+            end--;
+        }
+        return text.substring(0, end);
+    }
+
+    // What \s matches in a regex
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+
+    /**
+     * Same as {@link String#replace(CharSequence, CharSequence)}, which compiles a regex on every call.
+     */
+    private static String replace(String text, String target, String replacement) {
+        int found = text.indexOf(target);
+        if (found == -1) {
+            return text;
+        }
+        StringBuilder result = new StringBuilder(text.length());
+        int copied = 0;
+        while (found != -1) {
+            result.append(text, copied, found).append(replacement);
+            copied = found + target.length();
+            found = text.indexOf(target, copied);
+        }
+        return result.append(text, copied, text.length()).toString();
+    }
+
+    private static String substring(byte[] data, int start, int end) {
+        try {
+            return new String(data, start, end - start, "UTF-8");
+        } catch (java.io.UnsupportedEncodingException e) {
+            throw new RuntimeException("Internal error", e);
+        }
+    }
+}
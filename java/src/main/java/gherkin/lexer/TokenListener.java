@@ -0,0 +1,34 @@
+package gherkin.lexer;
+
+import java.util.List;
+
+/**
+ * A low-level alternative to {@link Listener} for consumers that only read some of the tokens.
+ * <p>
+ * Token values are views over the bytes being lexed. They are only decoded (and trimmed, unescaped
+ * or unindented) when they are read, so tokens that are ignored cost next to nothing. A value is
+ * only valid until the callback it was passed to returns. Call {@link CharSequence#toString()} to keep it.
+ */
+public interface TokenListener {
+    void comment(CharSequence comment, int line);
+
+    void tag(CharSequence tag, int line);
+
+    void feature(String keyword, CharSequence name, CharSequence description, int line);
+
+    void background(String keyword, CharSequence name, CharSequence description, int line);
+
+    void scenario(String keyword, CharSequence name, CharSequence description, int line);
+
+    void scenarioOutline(String keyword, CharSequence name, CharSequence description, int line);
+
+    void examples(String keyword, CharSequence name, CharSequence description, int line);
+
+    void step(String keyword, CharSequence name, int line);
+
+    void row(List<CharSequence> cells, int line);
+
+    void docString(CharSequence contentType, CharSequence content, int line);
+
+    void eof();
+}
@@ -0,0 +1,63 @@
+package gherkin.lexer;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Materializes every token and passes it on to a {@link Listener}.
+ */
+class TokenListenerAdapter implements TokenListener {
+    private final Listener listener;
+
+    public TokenListenerAdapter(Listener listener) {
+        this.listener = listener;
+    }
+
+    public void comment(CharSequence comment, int line) {
+        listener.comment(comment.toString(), line);
+    }
+
+    public void tag(CharSequence tag, int line) {
+        listener.tag(tag.toString(), line);
+    }
+
+    public void feature(String keyword, CharSequence name, CharSequence description, int line) {
+        listener.feature(keyword, name.toString(), description.toString(), line);
+    }
+
+    public void background(String keyword, CharSequence name, CharSequence description, int line) {
+        listener.background(keyword, name.toString(), description.toString(), line);
+    }
+
+    public void scenario(String keyword, CharSequence name, CharSequence description, int line) {
+        listener.scenario(keyword, name.toString(), description.toString(), line);
+    }
+
+    public void scenarioOutline(String keyword, CharSequence name, CharSequence description, int line) {
+        listener.scenarioOutline(keyword, name.toString(), description.toString(), line);
+    }
+
+    public void examples(String keyword, CharSequence name, CharSequence description, int line) {
+        listener.examples(keyword, name.toString(), description.toString(), line);
+    }
+
+    public void step(String keyword, CharSequence name, int line) {
+        listener.step(keyword, name.toString(), line);
+    }
+
+    public void row(List<CharSequence> cells, int line) {
+        List<String> row = new ArrayList<String>(cells.size());
+        for (CharSequence cell : cells) {
+            row.add(cell.toString());
+        }
+        listener.row(row, line);
+    }
+
+    public void docString(CharSequence contentType, CharSequence content, int line) {
+        listener.docString(contentType.toString(), content.toString(), line);
+    }
+
+    public void eof() {
+        listener.eof();
+    }
+}
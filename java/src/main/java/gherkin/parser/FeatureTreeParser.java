@@ -0,0 +1,302 @@
+package gherkin.parser;
+
+import gherkin.formatter.Formatter;
+import gherkin.formatter.model.Background;
+import gherkin.formatter.model.BasicStatement;
+import gherkin.formatter.model.Examples;
+import gherkin.formatter.model.Feature;
+import gherkin.formatter.model.Scenario;
+import gherkin.formatter.model.ScenarioOutline;
+import gherkin.formatter.model.Step;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Parses all the .feature files in a directory tree on an executor, with a {@link Parser} for each file.
+ * <p>
+ * Each file's events are buffered and replayed to the formatter on the calling thread, in the
+ * same order as parsing the files one after another would produce them. Errors don't stop the
+ * run. They are collected in the {@link Summary}, after replaying the events the file produced before failing.
+ */
+public class FeatureTreeParser {
+    private static final FileFilter FEATURE_FILTER = new FileFilter() {
+        public boolean accept(File file) {
+            return file.isDirectory() || file.getName().endsWith(".feature");
+        }
+    };
+
+    private final Formatter formatter;
+    private final ExecutorService executor;
+    private final int maxPending;
+
+    /**
+     * @param formatter  receives the events of all files. It is only called from the thread calling {@link #parse(File)}.
+     * @param executor   parses the files. It is not shut down.
+     * @param maxPending how many parsed files may be waiting to be replayed. Bounds the memory used for buffered events.
+     */
+    public FeatureTreeParser(Formatter formatter, ExecutorService executor, int maxPending) {
+        if (maxPending < 1) throw new IllegalArgumentException("maxPending must be positive: " + maxPending);
+        this.formatter = formatter;
+        this.executor = executor;
+        this.maxPending = maxPending;
+    }
+
+    /**
+     * @param root a .feature file, or a directory which is searched recursively for .feature files.
+     * @return the files and bytes parsed, the time it took and the errors.
+     */
+    public Summary parse(File root) {
+        long start = System.nanoTime();
+        List<File> files = new ArrayList<File>();
+        walk(root, files);
+
+        List<FileError> errors = new ArrayList<FileError>();
+        Deque<Future<Recording>> pending = new ArrayDeque<Future<Recording>>();
+        long bytes = 0;
+        for (File file : files) {
+            if (pending.size() == maxPending) {
+                replay(pending.removeFirst(), errors);
+            }
+            pending.addLast(executor.submit(parseTask(file)));
+            bytes += file.length();
+        }
+        while (!pending.isEmpty()) {
+            replay(pending.removeFirst(), errors);
+        }
+        return new Summary(files.size(), bytes, System.nanoTime() - start, errors);
+    }
+
+    private void walk(File file, List<File> files) {
+        if (file.isDirectory()) {
+            for (File child : file.listFiles(FEATURE_FILTER)) {
+                walk(child, files);
+            }
+        } else {
+            files.add(file);
+        }
+    }
+
+    private Callable<Recording> parseTask(final File file) {
+        return new Callable<Recording>() {
+            public Recording call() {
+                return new Recorder().parse(file);
+            }
+        };
+    }
+
+    private void replay(Future<Recording> future, List<FileError> errors) {
+        Recording recording;
+        try {
+            recording = future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        }
+        for (Event event : recording.events) {
+            event.replay(formatter);
+        }
+        if (recording.error != null) {
+            errors.add(new FileError(recording.file, recording.error));
+        }
+    }
+
+    public static class FileError {
+        private final File file;
+        private final Exception error;
+
+        public FileError(File file, Exception error) {
+            this.file = file;
+            this.error = error;
+        }
+
+        public File getFile() {
+            return file;
+        }
+
+        public Exception getError() {
+            return error;
+        }
+    }
+
+    public static class Summary {
+        private final int files;
+        private final long bytes;
+        private final long nanos;
+        private final List<FileError> errors;
+
+        public Summary(int files, long bytes, long nanos, List<FileError> errors) {
+            this.files = files;
+            this.bytes = bytes;
+            this.nanos = nanos;
+            this.errors = Collections.unmodifiableList(errors);
+        }
+
+        public int getFiles() {
+            return files;
+        }
+
+        public long getBytes() {
+            return bytes;
+        }
+
+        public double getSeconds() {
+            return nanos / 1e9;
+        }
+
+        public double getFilesPerSecond() {
+            return files / getSeconds();
+        }
+
+        public double getMegabytesPerSecond() {
+            return bytes / (1024.0 * 1024.0) / getSeconds();
+        }
+
+        public List<FileError> getErrors() {
+            return errors;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Parsed %d files (%.1f MB) in %.2fs: %.0f files/s, %.1f MB/s, %d errors",
+                    files, bytes / (1024.0 * 1024.0), getSeconds(), getFilesPerSecond(), getMegabytesPerSecond(), errors.size());
+        }
+    }
+
+    private interface Event {
+        void replay(Formatter formatter);
+    }
+
+    private static class Recording {
+        private final File file;
+        private final List<Event> events;
+        private final Exception error;
+
+        private Recording(File file, List<Event> events, Exception error) {
+            this.file = file;
+            this.events = events;
+            this.error = error;
+        }
+    }
+
+    /**
+     * A formatter that buffers the events of one file.
+     */
+    private static class Recorder implements Formatter {
+        private List<Event> events;
+
+        public Recording parse(File file) {
+            events = new ArrayList<Event>();
+            Exception error = null;
+            try {
+                InputStream in = new FileInputStream(file);
+                try {
+                    // A new Parser for every file. Comments and tags at the end of a file would
+                    // otherwise be attached to the next file parsed with the same Parser.
+                    new Parser(this).parse(in, file.getPath(), 0);
+                } finally {
+                    in.close();
+                }
+            } catch (IOException e) {
+                error = e;
+            } catch (RuntimeException e) {
+                error = e;
+            }
+            Recording recording = new Recording(file, events, error);
+            events = null;
+            return recording;
+        }
+
+        private void statement(final BasicStatement statement) {
+            events.add(new Event() {
+                public void replay(Formatter formatter) {
+                    statement.replay(formatter);
+                }
+            });
+        }
+
+        public void uri(final String uri) {
+            events.add(new Event() {
+                public void replay(Formatter formatter) {
+                    formatter.uri(uri);
+                }
+            });
+        }
+
+        public void feature(Feature feature) {
+            statement(feature);
+        }
+
+        public void background(Background background) {
+            statement(background);
+        }
+
+        public void scenario(Scenario scenario) {
+            statement(scenario);
+        }
+
+        public void scenarioOutline(ScenarioOutline scenarioOutline) {
+            statement(scenarioOutline);
+        }
+
+        public void examples(Examples examples) {
+            statement(examples);
+        }
+
+        public void step(Step step) {
+            statement(step);
+        }
+
+        public void eof() {
+            events.add(new Event() {
+                public void replay(Formatter formatter) {
+                    formatter.eof();
+                }
+            });
+        }
+
+        public void syntaxError(final String state, final String event, final List<String> legalEvents, final String uri, final Integer line) {
+            events.add(new Event() {
+                public void replay(Formatter formatter) {
+                    formatter.syntaxError(state, event, legalEvents, uri, line);
+                }
+            });
+        }
+
+        public void startOfScenarioLifeCycle(final Scenario scenario) {
+            events.add(new Event() {
+                public void replay(Formatter formatter) {
+                    formatter.startOfScenarioLifeCycle(scenario);
+                }
+            });
+        }
+
+        public void endOfScenarioLifeCycle(final Scenario scenario) {
+            events.add(new Event() {
+                public void replay(Formatter formatter) {
+                    formatter.endOfScenarioLifeCycle(scenario);
+                }
+            });
+        }
+
+        public void done() {
+        }
+
+        public void close() {
+        }
+    }
+}
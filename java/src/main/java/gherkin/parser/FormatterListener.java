@@ -72,6 +72,15 @@ public class FormatterListener implements Listener {
         stash.reset();
     }
 
+    /**
+     * For listening to the elements of a feature without its header, giving them the same ids as they
+     * would get after the feature.
+     */
+    FormatterListener(Formatter formatter, String featureName) {
+        this(formatter);
+        stash.featureId(featureName);
+    }
+
     @Override
     public void comment(String comment, Integer line) {
         stash.comment(new Comment(comment, line));
@@ -0,0 +1,633 @@
+package gherkin.parser;
+
+import gherkin.I18n;
+import gherkin.formatter.Formatter;
+import gherkin.formatter.model.Background;
+import gherkin.formatter.model.BasicStatement;
+import gherkin.formatter.model.Examples;
+import gherkin.formatter.model.Feature;
+import gherkin.formatter.model.Scenario;
+import gherkin.formatter.model.ScenarioOutline;
+import gherkin.formatter.model.Step;
+import gherkin.lexer.I18nLexer;
+import gherkin.lexer.LexingError;
+import gherkin.lexer.Listener;
+import gherkin.parser.StateMachine.Event;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Parses a feature and keeps the result, so that it can be parsed again after an edit by only lexing
+ * the feature elements the edit touched. This is meant for editors and watchers, which parse the same
+ * feature over and over with small changes.
+ * <p>
+ * The feature is split into its header and its elements: each background, scenario and scenario outline
+ * with its steps and examples, and the tags and comments before it. An edit is lexed from the start of the
+ * first element it touches up to the end of the element after the last one it touches. That element is
+ * expected to be lexed as before, which shows that the lexer is back in step with the rest of the feature.
+ * Otherwise more elements are lexed. The grammar is then checked against the tokens of the whole feature,
+ * which is cheap compared to lexing.
+ * <p>
+ * Edits to the header, which declares the language and the feature id, parse the whole feature again,
+ * as do all edits after a parse failed.
+ */
+public class IncrementalParser {
+    private final String featureURI;
+    private final String isoCode;
+    private String source;
+    private I18n i18n;
+    private String featureName;
+    private List<Segment> segments = Collections.emptyList();
+    private boolean valid;
+
+    public IncrementalParser(String featureURI) {
+        this(featureURI, "en");
+    }
+
+    /**
+     * @param isoCode the language of features that don't declare one.
+     */
+    public IncrementalParser(String featureURI, String isoCode) {
+        if (featureURI == null) throw new NullPointerException("featureURI");
+        this.featureURI = featureURI;
+        this.isoCode = isoCode;
+    }
+
+    /**
+     * Parses a whole feature, replacing the one parsed before.
+     *
+     * @throws LexingError if the feature can't be lexed.
+     * @throws ParseError  if the feature isn't valid gherkin.
+     */
+    public Delta parse(String gherkin) {
+        source = gherkin;
+        return parseAll();
+    }
+
+    /**
+     * Replaces text in the feature and parses it again.
+     *
+     * @param offset        where the edit starts, as an index in the current source.
+     * @param removedLength how many chars are removed at the offset.
+     * @param insertedText  the text inserted at the offset.
+     * @return the statements that were removed and added by the edit.
+     * @throws LexingError if the edited feature can't be lexed. The edit is kept, and the statements are the ones of the last successful parse.
+     * @throws ParseError  if the edited feature isn't valid gherkin. The edit is kept, and the statements are the ones of the last successful parse.
+     */
+    public Delta edit(int offset, int removedLength, String insertedText) {
+        if (source == null) {
+            throw new IllegalStateException("Nothing parsed yet");
+        }
+        if (offset < 0 || removedLength < 0 || offset + removedLength > source.length()) {
+            throw new IllegalArgumentException("Edit of " + removedLength + " chars at " + offset + " is outside the source of " + source.length() + " chars");
+        }
+        String oldSource = source;
+        source = oldSource.substring(0, offset) + insertedText + oldSource.substring(offset + removedLength);
+        if (!valid) {
+            return parseAll();
+        }
+        valid = false;
+        int charDelta = insertedText.length() - removedLength;
+        int lineDelta = countLines(insertedText, 0, insertedText.length()) - countLines(oldSource, offset, offset + removedLength);
+
+        int first = segmentAt(offset);
+        // The first line of an element ends the description of a heading before it.
+        if (first > 0 && offset <= oldSource.indexOf('\n', segments.get(first).offset) && segments.get(first - 1).endsWithHeading()) {
+            first--;
+        }
+        int end = segmentAt(offset + removedLength) + 1;
+        if (end < segments.size()) {
+            end++;
+        }
+
+        List<Segment> relexed;
+        while (true) {
+            if (first == 0) {
+                return parseAll();
+            }
+            Segment from = segments.get(first);
+            int to = end < segments.size() ? segments.get(end).offset + charDelta : source.length();
+            List<Segment> split;
+            try {
+                split = lex(from.offset, to, from.line);
+            } catch (LexingError e) {
+                // Reported by lexing the whole feature, with the right line number, unless lexing a part of it was wrong.
+                return parseAll();
+            }
+            if (!split.get(0).tokens.isEmpty()) {
+                // Tokens that belong to the element before
+                first--;
+                continue;
+            }
+            relexed = split.subList(1, split.size());
+            if (end < segments.size() && (relexed.isEmpty() || !relexed.get(relexed.size() - 1).sameAs(segments.get(end - 1), lineDelta))) {
+                end++;
+                continue;
+            }
+            break;
+        }
+
+        relexed = new ArrayList<Segment>(relexed);
+        while (!relexed.isEmpty() && first < end && segments.get(first).offset < offset && relexed.get(0).sameAs(segments.get(first), 0)) {
+            relexed.remove(0);
+            first++;
+        }
+        while (!relexed.isEmpty() && first < end && segments.get(end - 1).offset >= offset + removedLength && relexed.get(relexed.size() - 1).sameAs(segments.get(end - 1), lineDelta)) {
+            relexed.remove(relexed.size() - 1);
+            end--;
+        }
+
+        List<Segment> next = new ArrayList<Segment>(segments.size() - (end - first) + relexed.size());
+        next.addAll(segments.subList(0, first));
+        next.addAll(relexed);
+        for (Segment segment : segments.subList(end, segments.size())) {
+            next.add(segment.shifted(charDelta, lineDelta));
+        }
+        validate(next);
+
+        List<BasicStatement> removed = statements(segments.subList(first, end));
+        segments = next;
+        valid = true;
+        return new Delta(removed, statements(relexed), lineDelta);
+    }
+
+    public String getSource() {
+        return source;
+    }
+
+    /**
+     * @return the language of the feature, or null if nothing was parsed.
+     */
+    public I18n getI18nLanguage() {
+        return i18n;
+    }
+
+    /**
+     * @return the feature, background, scenarios, scenario outlines, examples and steps of the last successful parse, in order.
+     */
+    public List<BasicStatement> getStatements() {
+        if (segments.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<BasicStatement> result = new ArrayList<BasicStatement>(segments.get(0).statements(null));
+        result.addAll(statements(segments.subList(1, segments.size())));
+        return result;
+    }
+
+    /**
+     * Sends the last successful parse to the formatter, as a {@link Parser} would.
+     */
+    public void replay(Formatter formatter) {
+        formatter.uri(featureURI);
+        for (BasicStatement statement : getStatements()) {
+            statement.replay(formatter);
+        }
+        formatter.eof();
+    }
+
+    private Delta parseAll() {
+        List<BasicStatement> removed = getStatements();
+        valid = false;
+        TokenRecorder recorder = new TokenRecorder(1);
+        I18nLexer lexer = new I18nLexer(recorder, false, isoCode);
+        try {
+            lexer.scan(source);
+        } catch (LexingError e) {
+            // A parser would have stopped at a syntax error before the lexing error.
+            MachineStack machines = new MachineStack();
+            for (Token token : recorder.tokens) {
+                machines.event(token.event, token.line);
+            }
+            throw e;
+        }
+        List<Segment> next = split(recorder.tokens, source, 0, 1);
+        validate(next);
+
+        i18n = lexer.getI18nLanguage();
+        featureName = null;
+        for (Token token : next.get(0).tokens) {
+            if (token.event == Event.FEATURE) {
+                featureName = token.name;
+            }
+        }
+        segments = next;
+        valid = true;
+        return new Delta(removed, getStatements(), 0);
+    }
+
+    private List<Segment> lex(int start, int end, int line) {
+        TokenRecorder recorder = new TokenRecorder(line);
+        i18n.lexer(recorder).scan(source.substring(start, end));
+        return split(recorder.tokens, source, start, line);
+    }
+
+    /**
+     * Splits the tokens of the source from start into a head, which is the tokens before the first
+     * element, and the elements.
+     */
+    private static List<Segment> split(List<Token> tokens, String source, int start, int line) {
+        List<Segment> result = new ArrayList<Segment>();
+        int offset = start;
+        int currentLine = line;
+        int segmentStart = 0;
+        int segmentOffset = start;
+        int segmentLine = line;
+        for (int i = 0; i < tokens.size(); i++) {
+            if (!tokens.get(i).startsElement()) {
+                continue;
+            }
+            int elementStart = i;
+            while (elementStart > segmentStart && (tokens.get(elementStart - 1).event == Event.TAG || tokens.get(elementStart - 1).event == Event.COMMENT)) {
+                elementStart--;
+            }
+            int elementLine = tokens.get(elementStart).line;
+            while (currentLine < elementLine) {
+                offset = source.indexOf('\n', offset) + 1;
+                currentLine++;
+            }
+            result.add(new Segment(segmentOffset, segmentLine, tokens.subList(segmentStart, elementStart)));
+            segmentStart = elementStart;
+            segmentOffset = offset;
+            segmentLine = elementLine;
+        }
+        result.add(new Segment(segmentOffset, segmentLine, tokens.subList(segmentStart, tokens.size())));
+        return result;
+    }
+
+    private int segmentAt(int offset) {
+        int low = 0;
+        int high = segments.size() - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (segments.get(mid).offset <= offset) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+
+    private static int countLines(String s, int start, int end) {
+        int lines = 0;
+        for (int i = start; i < end; i++) {
+            if (s.charAt(i) == '\n') {
+                lines++;
+            }
+        }
+        return lines;
+    }
+
+    /**
+     * Runs the tokens through the state machines, like a {@link Parser} that throws on errors.
+     */
+    private void validate(List<Segment> segments) {
+        MachineStack machines = new MachineStack();
+        for (Segment segment : segments) {
+            for (Token token : segment.tokens) {
+                machines.event(token.event, segment.line + token.line);
+            }
+        }
+        machines.event(Event.EOF, 1);
+    }
+
+    private List<BasicStatement> statements(List<Segment> elements) {
+        List<BasicStatement> result = new ArrayList<BasicStatement>();
+        for (Segment element : elements) {
+            result.addAll(element.statements(featureName));
+        }
+        return result;
+    }
+
+    public static class Delta {
+        private final List<BasicStatement> removed;
+        private final List<BasicStatement> added;
+        private final int lineDelta;
+
+        public Delta(List<BasicStatement> removed, List<BasicStatement> added, int lineDelta) {
+            this.removed = Collections.unmodifiableList(removed);
+            this.added = Collections.unmodifiableList(added);
+            this.lineDelta = lineDelta;
+        }
+
+        /**
+         * @return the statements that were replaced, with their lines before the edit.
+         */
+        public List<BasicStatement> getRemoved() {
+            return removed;
+        }
+
+        /**
+         * @return the statements that replaced them.
+         */
+        public List<BasicStatement> getAdded() {
+            return added;
+        }
+
+        /**
+         * @return how many lines the statements after the edit, which are otherwise unchanged, have moved.
+         */
+        public int getLineDelta() {
+            return lineDelta;
+        }
+    }
+
+    /**
+     * The header or an element of the feature, with the tokens lexed from it.
+     */
+    private static class Segment {
+        private final int offset;
+        private final int line;
+        private final List<Token> tokens;
+        private List<BasicStatement> statements;
+
+        /**
+         * @param tokens with absolute lines.
+         */
+        private Segment(int offset, int line, List<Token> tokens) {
+            this.offset = offset;
+            this.line = line;
+            this.tokens = new ArrayList<Token>(tokens.size());
+            for (Token token : tokens) {
+                this.tokens.add(token.relativeTo(line));
+            }
+        }
+
+        private Segment(int offset, int line, List<Token> tokens, List<BasicStatement> statements) {
+            this.offset = offset;
+            this.line = line;
+            this.tokens = tokens;
+            this.statements = statements;
+        }
+
+        private Segment shifted(int charDelta, int lineDelta) {
+            // The statements have absolute lines, so they are only kept if the lines haven't moved.
+            return new Segment(offset + charDelta, line + lineDelta, tokens, lineDelta == 0 ? statements : null);
+        }
+
+        private boolean endsWithHeading() {
+            return !tokens.isEmpty() && tokens.get(tokens.size() - 1).isHeading();
+        }
+
+        private boolean sameAs(Segment other, int lineDelta) {
+            return line == other.line + lineDelta && tokens.equals(other.tokens);
+        }
+
+        /**
+         * @param featureName the name of the feature, for the ids of elements, or null for the header.
+         */
+        private List<BasicStatement> statements(String featureName) {
+            if (statements == null) {
+                StatementCollector collector = new StatementCollector();
+                FormatterListener listener = featureName == null ? new FormatterListener(collector) : new FormatterListener(collector, featureName);
+                for (Token token : tokens) {
+                    token.replay(listener, line);
+                }
+                listener.eof();
+                statements = Collections.unmodifiableList(collector.statements);
+            }
+            return statements;
+        }
+    }
+
+    /**
+     * A token from the lexer, with its line relative to the start of the lexed text.
+     */
+    private static class Token {
+        private final Event event;
+        private final String keyword;
+        private final String name;
+        private final String description;
+        private final List<String> cells;
+        private final int line;
+
+        private Token(Event event, String keyword, String name, String description, List<String> cells, int line) {
+            this.event = event;
+            this.keyword = keyword;
+            this.name = name;
+            this.description = description;
+            this.cells = cells;
+            this.line = line;
+        }
+
+        private boolean startsElement() {
+            return event == Event.BACKGROUND || event == Event.SCENARIO || event == Event.SCENARIO_OUTLINE;
+        }
+
+        private boolean isHeading() {
+            return startsElement() || event == Event.FEATURE || event == Event.EXAMPLES;
+        }
+
+        private Token relativeTo(int firstLine) {
+            return new Token(event, keyword, name, description, cells, line - firstLine);
+        }
+
+        private void replay(Listener listener, int firstLine) {
+            int l = firstLine + line;
+            switch (event) {
+                case TAG:
+                    listener.tag(name, l);
+                    break;
+                case COMMENT:
+                    listener.comment(name, l);
+                    break;
+                case FEATURE:
+                    listener.feature(keyword, name, description, l);
+                    break;
+                case BACKGROUND:
+                    listener.background(keyword, name, description, l);
+                    break;
+                case SCENARIO:
+                    listener.scenario(keyword, name, description, l);
+                    break;
+                case SCENARIO_OUTLINE:
+                    listener.scenarioOutline(keyword, name, description, l);
+                    break;
+                case EXAMPLES:
+                    listener.examples(keyword, name, description, l);
+                    break;
+                case STEP:
+                    listener.step(keyword, name, l);
+                    break;
+                case ROW:
+                    listener.row(cells, l);
+                    break;
+                case DOC_STRING:
+                    listener.docString(keyword, description, l);
+                    break;
+                default:
+                    throw new RuntimeException("Not a token: " + event);
+            }
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Token)) return false;
+            Token other = (Token) o;
+            return event == other.event && line == other.line && equal(keyword, other.keyword) && equal(name, other.name)
+                    && equal(description, other.description) && equal(cells, other.cells);
+        }
+
+        @Override
+        public int hashCode() {
+            return Arrays.hashCode(new Object[]{event, keyword, name, description, cells, line});
+        }
+
+        private static boolean equal(Object a, Object b) {
+            return a == null ? b == null : a.equals(b);
+        }
+    }
+
+    /**
+     * Records the tokens of the lexer, with absolute lines.
+     */
+    private static class TokenRecorder implements Listener {
+        private final int firstLine;
+        private final List<Token> tokens = new ArrayList<Token>();
+
+        private TokenRecorder(int firstLine) {
+            this.firstLine = firstLine;
+        }
+
+        private void add(Event event, String keyword, String name, String description, List<String> cells, Integer line) {
+            tokens.add(new Token(event, keyword, name, description, cells, firstLine + line - 1));
+        }
+
+        public void comment(String comment, Integer line) {
+            add(Event.COMMENT, null, comment, null, null, line);
+        }
+
+        public void tag(String tag, Integer line) {
+            add(Event.TAG, null, tag, null, null, line);
+        }
+
+        public void feature(String keyword, String name, String description, Integer line) {
+            add(Event.FEATURE, keyword, name, description, null, line);
+        }
+
+        public void background(String keyword, String name, String description, Integer line) {
+            add(Event.BACKGROUND, keyword, name, description, null, line);
+        }
+
+        public void scenario(String keyword, String name, String description, Integer line) {
+            add(Event.SCENARIO, keyword, name, description, null, line);
+        }
+
+        public void scenarioOutline(String keyword, String name, String description, Integer line) {
+            add(Event.SCENARIO_OUTLINE, keyword, name, description, null, line);
+        }
+
+        public void examples(String keyword, String name, String description, Integer line) {
+            add(Event.EXAMPLES, keyword, name, description, null, line);
+        }
+
+        public void step(String keyword, String name, Integer line) {
+            add(Event.STEP, keyword, name, null, null, line);
+        }
+
+        public void row(List<String> cells, Integer line) {
+            add(Event.ROW, null, null, null, cells, line);
+        }
+
+        public void docString(String contentType, String content, Integer line) {
+            add(Event.DOC_STRING, contentType, null, content, null, line);
+        }
+
+        public void eof() {
+        }
+    }
+
+    /**
+     * The stack of state machines of a {@link Parser}, without the listener.
+     */
+    private class MachineStack {
+        private final List<StateMachine> machines = new ArrayList<StateMachine>();
+        private int[] states = new int[4];
+
+        private MachineStack() {
+            push("root");
+        }
+
+        private void push(String name) {
+            StateMachine machine = StateMachine.named(name);
+            if (machines.size() == states.length) {
+                states = Arrays.copyOf(states, states.length * 2);
+            }
+            states[machines.size()] = machine.state(name);
+            machines.add(machine);
+        }
+
+        private void event(Event event, int line) {
+            while (true) {
+                int top = machines.size() - 1;
+                StateMachine machine = machines.get(top);
+                byte transition = machine.transition(states[top], event);
+                if (transition == StateMachine.ERROR) {
+                    throw new ParseError(machine.stateName(states[top]), event.name, machine.expectedEvents(states[top]), featureURI, line);
+                } else if (transition == StateMachine.POP) {
+                    machines.remove(top);
+                } else if (transition <= StateMachine.PUSH) {
+                    push(machine.pushedMachine(transition));
+                } else {
+                    states[top] = transition;
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Collects the statements of a segment.
+     */
+    private static class StatementCollector implements Formatter {
+        private final List<BasicStatement> statements = new ArrayList<BasicStatement>();
+
+        public void feature(Feature feature) {
+            statements.add(feature);
+        }
+
+        public void background(Background background) {
+            statements.add(background);
+        }
+
+        public void scenario(Scenario scenario) {
+            statements.add(scenario);
+        }
+
+        public void scenarioOutline(ScenarioOutline scenarioOutline) {
+            statements.add(scenarioOutline);
+        }
+
+        public void examples(Examples examples) {
+            statements.add(examples);
+        }
+
+        public void step(Step step) {
+            statements.add(step);
+        }
+
+        public void syntaxError(String state, String event, List<String> legalEvents, String uri, Integer line) {
+        }
+
+        public void uri(String uri) {
+        }
+
+        public void startOfScenarioLifeCycle(Scenario scenario) {
+        }
+
+        public void endOfScenarioLifeCycle(Scenario scenario) {
+        }
+
+        public void done() {
+        }
+
+        public void close() {
+        }
+
+        public void eof() {
+        }
+    }
+}
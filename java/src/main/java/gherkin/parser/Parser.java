@@ -4,14 +4,12 @@ import gherkin.I18n;
 import gherkin.formatter.Formatter;
 import gherkin.lexer.I18nLexer;
 import gherkin.lexer.Listener;
+import gherkin.parser.StateMachine.Event;
 
+import java.io.InputStream;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 public class Parser implements Listener {
     List<Machine> machines = new ArrayList<Machine>();
@@ -54,10 +52,55 @@ public class Parser implements Listener {
      * @param lineOffset the line offset within the uri document the gherkin was taken from. Typically 0.
      */
     public void parse(String gherkin, String featureURI, Integer lineOffset) {
-        formatter.uri(featureURI);
-        this.featureURI = featureURI;
-        this.lineOffset = lineOffset;
-        pushMachine(machineName);
+        start(featureURI, lineOffset);
+        try {
+            lexer.scan(gherkin);
+        } finally {
+            popMachine();
+        }
+    }
+
+    /**
+     * Parses UTF-8 encoded gherkin in place, without decoding it to a String first.
+     *
+     * @param gherkin    UTF-8 encoded gherkin.
+     * @param featureURI the URI where the gherkin originated from. Typically a file path.
+     * @param lineOffset the line offset within the uri document the gherkin was taken from. Typically 0.
+     */
+    public void parse(byte[] gherkin, String featureURI, Integer lineOffset) {
+        start(featureURI, lineOffset);
+        try {
+            lexer.scan(gherkin, 0, gherkin.length);
+        } finally {
+            popMachine();
+        }
+    }
+
+    /**
+     * Parses the remaining bytes of the buffer, for example a memory-mapped feature file.
+     *
+     * @param gherkin    UTF-8 encoded gherkin. The buffer's position is not changed.
+     * @param featureURI the URI where the gherkin originated from. Typically a file path.
+     * @param lineOffset the line offset within the uri document the gherkin was taken from. Typically 0.
+     */
+    public void parse(ByteBuffer gherkin, String featureURI, Integer lineOffset) {
+        start(featureURI, lineOffset);
+        try {
+            lexer.scan(gherkin);
+        } finally {
+            popMachine();
+        }
+    }
+
+    /**
+     * Parses the gherkin as it is read, without holding all of it in memory.
+     *
+     * @param gherkin    UTF-8 encoded gherkin. The stream is not closed.
+     * @param featureURI the URI where the gherkin originated from. Typically a file path.
+     * @param lineOffset the line offset within the uri document the gherkin was taken from. Typically 0.
+     */
+    public void parse(InputStream gherkin, String featureURI, Integer lineOffset) {
+        start(featureURI, lineOffset);
         try {
             lexer.scan(gherkin);
         } finally {
@@ -65,6 +108,13 @@ public class Parser implements Listener {
         }
     }
 
+    private void start(String featureURI, Integer lineOffset) {
+        formatter.uri(featureURI);
+        this.featureURI = featureURI;
+        this.lineOffset = lineOffset;
+        pushMachine(machineName);
+    }
+
     public I18n getI18nLanguage() {
         return lexer.getI18nLanguage();
     }
@@ -79,82 +129,82 @@ public class Parser implements Listener {
 
     @Override
     public void tag(String tag, Integer line) {
-        if (event("tag", line)) {
+        if (event(Event.TAG, line)) {
             listener.tag(tag, line);
         }
     }
 
     @Override
     public void docString(String contentType, String content, Integer line) {
-        if (event("doc_string", line)) {
+        if (event(Event.DOC_STRING, line)) {
             listener.docString(contentType, content, line);
         }
     }
 
     @Override
     public void feature(String keyword, String name, String description, Integer line) {
-        if (event("feature", line)) {
+        if (event(Event.FEATURE, line)) {
             listener.feature(keyword, name, description, line);
         }
     }
 
     @Override
     public void background(String keyword, String name, String description, Integer line) {
-        if (event("background", line)) {
+        if (event(Event.BACKGROUND, line)) {
             listener.background(keyword, name, description, line);
         }
     }
 
     @Override
     public void scenario(String keyword, String name, String description, Integer line) {
-        if (event("scenario", line)) {
+        if (event(Event.SCENARIO, line)) {
             listener.scenario(keyword, name, description, line);
         }
     }
 
     @Override
     public void scenarioOutline(String keyword, String name, String description, Integer line) {
-        if (event("scenario_outline", line)) {
+        if (event(Event.SCENARIO_OUTLINE, line)) {
             listener.scenarioOutline(keyword, name, description, line);
         }
     }
 
     @Override
     public void examples(String keyword, String name, String description, Integer line) {
-        if (event("examples", line)) {
+        if (event(Event.EXAMPLES, line)) {
             listener.examples(keyword, name, description, line);
         }
     }
 
     @Override
     public void step(String keyword, String name, Integer line) {
-        if (event("step", line)) {
+        if (event(Event.STEP, line)) {
             listener.step(keyword, name, line);
         }
     }
 
     @Override
     public void comment(String comment, Integer line) {
-        if (event("comment", line)) {
+        if (event(Event.COMMENT, line)) {
             listener.comment(comment, line);
         }
     }
 
     @Override
     public void row(List<String> cells, Integer line) {
-        if (event("row", line)) {
+        if (event(Event.ROW, line)) {
             listener.row(cells, line);
         }
     }
 
     @Override
     public void eof() {
-        if (event("eof", 1)) {
+        if (event(Event.EOF, 1)) {
             listener.eof();
         }
     }
 
-    private boolean event(String event, Integer line) {
+    private boolean event(Event event, Integer line) {
         try {
             machine().event(event, line);
             return true;
@@ -163,7 +213,7 @@ public class Parser implements Listener {
                 throw e;
             } else {
                 int l = lineOffset + line;
-                listener.syntaxError(e.getState(), event, e.getLegalEvents(), featureURI, l);
+                listener.syntaxError(e.getState(), event.name, e.getLegalEvents(), featureURI, l);
                 return false;
             }
         }
@@ -174,86 +224,34 @@ public class Parser implements Listener {
     }
 
     private static class Machine {
-        private static final Pattern PUSH = Pattern.compile("push\\((.+)\\)");
-        private static final Map<String, Map<String, Map<String, String>>> TRANSITION_MAPS = new HashMap<String, Map<String, Map<String, String>>>();
-
         private final Parser parser;
-        private final String name;
         private final String uri;
-        private String state;
-        private Map<String, Map<String, String>> transitionMap;
+        private final StateMachine stateMachine;
+        private int state;
 
         public Machine(Parser parser, String name, String uri) {
             if (uri == null) {
                 throw new NullPointerException("uri");
             }
             this.parser = parser;
-            this.name = name;
-            this.state = name;
             this.uri = uri;
-            this.transitionMap = transitionMap(name);
+            this.stateMachine = StateMachine.named(name);
+            this.state = stateMachine.state(name);
         }
 
-        public void event(String event, Integer line) {
-            Map<String, String> states = transitionMap.get(state);
-            if (states == null) {
-                throw new RuntimeException("Unknown getState: " + state + " for machine " + name);
-            }
-            String newState = states.get(event);
-            if (newState == null) {
-                throw new RuntimeException("Unknown transition: " + event + " among " + states + " for machine " + name + " in getState " + state);
-            }
-            if ("E".equals(newState)) {
-                throw new ParseError(state, event, expectedEvents(), uri, line);
+        public void event(Event event, Integer line) {
+            byte transition = stateMachine.transition(state, event);
+            if (transition == StateMachine.ERROR) {
+                throw new ParseError(stateMachine.stateName(state), event.name, stateMachine.expectedEvents(state), uri, line);
+            } else if (transition == StateMachine.POP) {
+                parser.popMachine();
+                parser.event(event, line);
+            } else if (transition <= StateMachine.PUSH) {
+                parser.pushMachine(stateMachine.pushedMachine(transition));
+                parser.event(event, line);
             } else {
-                Matcher push = PUSH.matcher(newState);
-                if (push.matches()) {
-                    parser.pushMachine(push.group(1));
-                    parser.event(event, line);
-                } else if ("pop()".equals(newState)) {
-                    parser.popMachine();
-                    parser.event(event, line);
-                } else {
-                    state = newState;
-                }
-            }
-        }
-
-        private List<String> expectedEvents() {
-            List<String> result = new ArrayList<String>();
-            for (String event : transitionMap.get(state).keySet()) {
-                if (!transitionMap.get(state).get(event).equals("E")) {
-                    result.add(event);
-                }
-            }
-            Collections.sort(result);
-            result.remove("eof");
-            return result;
-        }
-
-        private Map<String, Map<String, String>> transitionMap(String name) {
-            Map<String, Map<String, String>> map = TRANSITION_MAPS.get(name);
-            if (map == null) {
-                map = buildTransitionMap(name);
-                TRANSITION_MAPS.put(name, map);
-            }
-            return map;
-        }
-
-        private Map<String, Map<String, String>> buildTransitionMap(String name) {
-            Map<String, Map<String, String>> result = new HashMap<String, Map<String, String>>();
-            List<List<String>> transitionTable = new StateMachineReader(name).transitionTable();
-            List<String> events = transitionTable.get(0).subList(1, transitionTable.get(0).size());
-            for (List<String> actions : transitionTable.subList(1, transitionTable.size())) {
-                Map<String, String> transitions = new HashMap<String, String>();
-                int col = 1;
-                for (String event : events) {
-                    transitions.put(event, actions.get(col++));
-                }
-                String state = actions.get(0);
-                result.put(state, transitions);
+                state = transition;
             }
-            return result;
         }
     }
 }
@@ -0,0 +1,151 @@
+package gherkin.parser;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * One of the parser state machines in lib/gherkin/parser, compiled into a table indexed by
+ * state number and {@link Event}. A transition is either the number of the next state or one
+ * of {@link #ERROR}, {@link #POP} or a push, which is at or below {@link #PUSH}.
+ */
+class StateMachine {
+    enum Event {
+        FEATURE("feature"),
+        BACKGROUND("background"),
+        SCENARIO("scenario"),
+        SCENARIO_OUTLINE("scenario_outline"),
+        EXAMPLES("examples"),
+        STEP("step"),
+        ROW("row"),
+        DOC_STRING("doc_string"),
+        EOF("eof"),
+        COMMENT("comment"),
+        TAG("tag");
+
+        final String name;
+
+        Event(String name) {
+            this.name = name;
+        }
+    }
+
+    static final byte ERROR = -1;
+    static final byte POP = -2;
+    static final byte PUSH = -3;
+
+    private static final Map<String, StateMachine> STATE_MACHINES;
+
+    // Built eagerly so that parsers on any thread share the same immutable tables without synchronization.
+    static {
+        Map<String, StateMachine> stateMachines = new HashMap<String, StateMachine>();
+        for (String name : new String[]{"root", "meta", "steps"}) {
+            stateMachines.put(name, new StateMachine(name));
+        }
+        STATE_MACHINES = Collections.unmodifiableMap(stateMachines);
+    }
+
+    final String name;
+    private final String[] states;
+    private final byte[][] transitions;
+    private final String[] pushedMachines;
+
+    static StateMachine named(String name) {
+        StateMachine stateMachine = STATE_MACHINES.get(name);
+        if (stateMachine == null) {
+            throw new RuntimeException("Unknown state machine: " + name + ". Known machines: " + STATE_MACHINES.keySet());
+        }
+        return stateMachine;
+    }
+
+    private StateMachine(String name) {
+        this(name, new StateMachineReader(name).transitionTable());
+    }
+
+    StateMachine(String name, List<List<String>> table) {
+        this.name = name;
+        List<String> header = table.get(0);
+        List<List<String>> rows = table.subList(1, table.size());
+
+        states = new String[rows.size()];
+        for (int i = 0; i < states.length; i++) {
+            states[i] = rows.get(i).get(0);
+        }
+
+        int[] columns = new int[Event.values().length];
+        for (Event event : Event.values()) {
+            columns[event.ordinal()] = header.indexOf(event.name);
+            if (columns[event.ordinal()] == -1) {
+                throw new RuntimeException("Unknown transition: " + event.name + " among " + header + " for machine " + name);
+            }
+        }
+
+        List<String> pushes = new ArrayList<String>();
+        transitions = new byte[states.length][];
+        for (int i = 0; i < states.length; i++) {
+            transitions[i] = new byte[columns.length];
+            for (int e = 0; e < columns.length; e++) {
+                transitions[i][e] = encode(rows.get(i).get(columns[e]), pushes);
+            }
+        }
+        pushedMachines = pushes.toArray(new String[pushes.size()]);
+    }
+
+    private byte encode(String newState, List<String> pushes) {
+        if ("E".equals(newState)) {
+            return ERROR;
+        }
+        if ("pop()".equals(newState)) {
+            return POP;
+        }
+        if (newState.startsWith("push(") && newState.endsWith(")")) {
+            String machine = newState.substring("push(".length(), newState.length() - 1);
+            if (!pushes.contains(machine)) {
+                pushes.add(machine);
+            }
+            return (byte) (PUSH - pushes.indexOf(machine));
+        }
+        return (byte) state(newState);
+    }
+
+    /**
+     * @return the number of the state with the given name.
+     */
+    int state(String stateName) {
+        for (int i = 0; i < states.length; i++) {
+            if (states[i].equals(stateName)) {
+                return i;
+            }
+        }
+        throw new RuntimeException("Unknown getState: " + stateName + " for machine " + name);
+    }
+
+    String stateName(int state) {
+        return states[state];
+    }
+
+    byte transition(int state, Event event) {
+        return transitions[state][event.ordinal()];
+    }
+
+    /**
+     * @param transition a push transition.
+     * @return the name of the machine to push.
+     */
+    String pushedMachine(byte transition) {
+        return pushedMachines[PUSH - transition];
+    }
+
+    List<String> expectedEvents(int state) {
+        List<String> result = new ArrayList<String>();
+        for (Event event : Event.values()) {
+            if (event != Event.EOF && transitions[state][event.ordinal()] != ERROR) {
+                result.add(event.name);
+            }
+        }
+        Collections.sort(result);
+        return result;
+    }
+}
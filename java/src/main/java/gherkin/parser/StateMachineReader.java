@@ -2,13 +2,13 @@ package gherkin.parser;
 
 import gherkin.lexer.En;
 import gherkin.lexer.Lexer;
-import gherkin.lexer.Listener;
+import gherkin.lexer.TokenListener;
 import gherkin.util.FixJava;
 
 import java.util.ArrayList;
 import java.util.List;
 
-public class StateMachineReader implements Listener {
+public class StateMachineReader implements TokenListener {
     private final String machinePath;
     private List<List<String>> transitionTable;
 
@@ -23,37 +23,41 @@ public class StateMachineReader implements Listener {
         return transitionTable;
     }
 
-    public void tag(String tag, Integer line) {
+    public void tag(CharSequence tag, int line) {
     }
 
-    public void comment(String comment, Integer line) {
+    public void comment(CharSequence comment, int line) {
     }
 
-    public void feature(String keyword, String name, String description, Integer line) {
+    public void feature(String keyword, CharSequence name, CharSequence description, int line) {
     }
 
-    public void background(String keyword, String name, String description, Integer line) {
+    public void background(String keyword, CharSequence name, CharSequence description, int line) {
     }
 
-    public void scenario(String keyword, String name, String description, Integer line) {
+    public void scenario(String keyword, CharSequence name, CharSequence description, int line) {
     }
 
-    public void scenarioOutline(String keyword, String name, String description, Integer line) {
+    public void scenarioOutline(String keyword, CharSequence name, CharSequence description, int line) {
     }
 
-    public void examples(String keyword, String name, String description, Integer line) {
+    public void examples(String keyword, CharSequence name, CharSequence description, int line) {
     }
 
-    public void step(String keyword, String name, Integer line) {
+    public void step(String keyword, CharSequence name, int line) {
     }
 
-    public void docString(String contentType, String content, Integer line) {
+    public void docString(CharSequence contentType, CharSequence content, int line) {
     }
 
     public void eof() {
     }
 
-    public void row(List<String> cells, Integer line) {
-        transitionTable.add(cells);
+    public void row(List<CharSequence> cells, int line) {
+        List<String> row = new ArrayList<String>(cells.size());
+        for (CharSequence cell : cells) {
+            row.add(cell.toString());
+        }
+        transitionTable.add(row);
     }
 }
@@ -6,10 +6,13 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.Reader;
 import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.List;
 
 public class FixJava {
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
 
     public static String join(List<String> strings, String separator) {
         StringBuilder sb = new StringBuilder();
@@ -69,4 +72,22 @@ public class FixJava {
             throw new RuntimeException(e);
         }
     }
+
+    /**
+     * @return the SHA-1 hash of the bytes, in lower case hex.
+     */
+    public static String sha1Hex(byte[] data) {
+        byte[] hash;
+        try {
+            hash = MessageDigest.getInstance("SHA-1").digest(data);
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+        char[] hex = new char[hash.length * 2];
+        for (int i = 0; i < hash.length; i++) {
+            hex[2 * i] = HEX[hash[i] >> 4 & 0xF];
+            hex[2 * i + 1] = HEX[hash[i] & 0xF];
+        }
+        return new String(hex);
+    }
 }
@@ -2,12 +2,24 @@ package gherkin;
 
 import gherkin.lexer.I18nLexer;
 import gherkin.lexer.Lexer;
+import gherkin.lexer.LexingError;
 import gherkin.lexer.Listener;
+import gherkin.lexer.TokenListener;
 import gherkin.util.FixJava;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
 
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
 
@@ -79,4 +91,138 @@ public class I18nLexerTest {
         verify(listener).step("Given ", "", 3);
     }
 
+    @Test
+    public void shouldScanStreamReadInSmallChunks() throws UnsupportedEncodingException {
+        Listener listener = mock(Listener.class);
+        Lexer lexer = new I18nLexer(listener);
+
+        String feature = "" +
+                "# language: no\n" +
+                "Egenskap: ÆØÅ\n" +
+                "  Beskrivelse\n" +
+                "  Scenario: S\n" +
+                "    Gitt en tabell\n" +
+                "      | æ | ø\\|å |\n" +
+                "    Så en tekst\n" +
+                "      \"\"\"\n" +
+                "      hei\n" +
+                "      \"\"\"\n";
+
+        lexer.scan(new OneByteAtATimeInputStream(new ByteArrayInputStream(feature.getBytes("UTF-8"))));
+
+        verify(listener).feature("Egenskap", "ÆØÅ", "Beskrivelse", 2);
+        verify(listener).scenario("Scenario", "S", "", 4);
+        verify(listener).step("Gitt ", "en tabell", 5);
+        verify(listener).row(Arrays.asList("æ", "ø|å"), 6);
+        verify(listener).step("Så ", "en tekst", 7);
+        verify(listener).docString("", "hei", 8);
+        verify(listener).eof();
+    }
+
+    @Test(expected = LexingError.class)
+    public void shouldReportLexingErrorsInStreams() throws UnsupportedEncodingException {
+        Lexer lexer = new I18nLexer(mock(Listener.class));
+
+        String feature = "" +
+                "Feature: F\n" +
+                "  oops\n" +
+                "  Scenario: S\n" +
+                "    Given x\n" +
+                "  this is bad\n";
+
+        lexer.scan(new OneByteAtATimeInputStream(new ByteArrayInputStream(feature.getBytes("UTF-8"))));
+    }
+
+    @Test
+    public void shouldScanSliceOfByteArray() throws UnsupportedEncodingException {
+        Listener listener = mock(Listener.class);
+        Lexer lexer = new I18nLexer(listener);
+
+        byte[] feature = ("" +
+                "# not this\n" +
+                "#language:no\n" +
+                "Egenskap: i18n støtte\n" +
+                "  Scenario: Parsing\n" +
+                "    Gitt en egenskap\n" +
+                "nor this").getBytes("UTF-8");
+        int offset = "# not this\n".length();
+        int length = feature.length - offset - "nor this".length();
+
+        lexer.scan(feature, offset, length);
+
+        verify(listener).comment("#language:no", 1);
+        verify(listener).feature("Egenskap", "i18n støtte", "", 2);
+        verify(listener).step("Gitt ", "en egenskap", 4);
+        verify(listener).eof();
+    }
+
+    @Test
+    public void shouldScanDirectByteBuffer() throws UnsupportedEncodingException {
+        Listener listener = mock(Listener.class);
+        Lexer lexer = new I18nLexer(listener);
+
+        byte[] feature = ("" +
+                "Feature: Direct\n" +
+                "  Scenario: Mapped\n" +
+                "    Given a buffer outside the heap").getBytes("UTF-8");
+        ByteBuffer buffer = ByteBuffer.allocateDirect(feature.length);
+        buffer.put(feature).flip();
+
+        lexer.scan(buffer);
+
+        verify(listener).feature("Feature", "Direct", "", 1);
+        verify(listener).scenario("Scenario", "Mapped", "", 2);
+        verify(listener).step("Given ", "a buffer outside the heap", 3);
+        verify(listener).eof();
+        assertEquals(0, buffer.position());
+    }
+
+    @Test
+    public void shouldOnlyDetectLanguageInHeader() throws UnsupportedEncodingException {
+        I18nLexer lexer = new I18nLexer(mock(Listener.class));
+
+        lexer.scan("\n# first comment\n  # # language: fr\nFonctionnalité: F\n");
+        assertEquals("fr", lexer.getI18nLanguage().getIsoCode());
+
+        lexer.scan("Feature: F\n# language: fr\n");
+        assertEquals("en", lexer.getI18nLanguage().getIsoCode());
+
+        byte[] feature = "#language:no\r\nEgenskap: F\r\n".getBytes("UTF-8");
+        lexer.scan(new OneByteAtATimeInputStream(new ByteArrayInputStream(feature)));
+        assertEquals("no", lexer.getI18nLanguage().getIsoCode());
+    }
+
+    @Test
+    public void shouldPassTokenValuesAsViews() {
+        TokenListener listener = mock(TokenListener.class);
+        Lexer lexer = new I18nLexer(listener, "en");
+
+        String feature = "" +
+                "Feature: Views\n" +
+                "  Scenario: Cells\n" +
+                "    Given a table\n" +
+                "      | a\\|b | c\\nd |\n";
+
+        lexer.scan(feature);
+
+        ArgumentCaptor<CharSequence> name = ArgumentCaptor.forClass(CharSequence.class);
+        verify(listener).step(eq("Given "), name.capture(), eq(3));
+        assertEquals("a table", name.getValue().toString());
+
+        ArgumentCaptor<List> cells = ArgumentCaptor.forClass(List.class);
+        verify(listener).row(cells.capture(), eq(4));
+        assertEquals("a|b", cells.getValue().get(0).toString());
+        assertEquals("c\nd", cells.getValue().get(1).toString());
+    }
+
+    private static class OneByteAtATimeInputStream extends FilterInputStream {
+        public OneByteAtATimeInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            return super.read(b, off, Math.min(len, 1));
+        }
+    }
 }
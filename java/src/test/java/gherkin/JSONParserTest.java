@@ -0,0 +1,30 @@
+package gherkin;
+
+import gherkin.formatter.Formatter;
+import gherkin.formatter.Reporter;
+import gherkin.formatter.model.Feature;
+import org.junit.Test;
+
+import java.io.StringReader;
+
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.withSettings;
+
+public class JSONParserTest {
+    @Test
+    public void replays_each_feature_before_reading_the_next() {
+        Formatter formatter = mock(Formatter.class, withSettings().extraInterfaces(Reporter.class));
+        String truncated = "[{\"uri\": \"a.feature\", \"keyword\": \"Feature\", \"name\": \"A\", \"line\": 1}, {\"uri\": ";
+        try {
+            new JSONParser((Reporter) formatter, formatter).parse(new StringReader(truncated));
+            fail();
+        } catch (RuntimeException expected) {
+        }
+        verify(formatter).uri("a.feature");
+        verify(formatter).feature(any(Feature.class));
+        verify(formatter).eof();
+    }
+}
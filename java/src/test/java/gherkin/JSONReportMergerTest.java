@@ -0,0 +1,117 @@
+package gherkin;
+
+import gherkin.deps.com.google.gson.Gson;
+import gherkin.formatter.EmbeddingStore;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.assertEquals;
+
+public class JSONReportMergerTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(4);
+
+    @After
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    @Test
+    public void merges_features_by_uri_and_id_in_a_fixed_order() throws IOException {
+        File first = write("first.json", "[" + feature("b.feature", "b", "B1") + "," + feature("a.feature", "a", "A1") + "]");
+        File second = write("second.json", "[" + feature("b.feature", "b", "B2") + "]");
+
+        StringBuilder out = new StringBuilder();
+        new JSONReportMerger(executor).merge(Arrays.asList(first, second), out);
+
+        List<Map> features = new Gson().fromJson(out.toString(), List.class);
+        assertEquals(2, features.size());
+        assertEquals("a.feature", features.get(0).get("uri"));
+        assertEquals(Arrays.asList("A1"), scenarioNames(features.get(0)));
+        assertEquals("b.feature", features.get(1).get("uri"));
+        assertEquals(Arrays.asList("B1", "B2"), scenarioNames(features.get(1)));
+    }
+
+    @Test
+    public void merges_many_reports_in_batches_and_reads_reports_out_of_order_again() throws IOException {
+        List<File> reports = new ArrayList<File>();
+        for (int r = 0; r < 40; r++) {
+            StringBuilder json = new StringBuilder("[");
+            for (int f = 0; f < 5; f++) {
+                // The last report has its features in reverse order
+                int n = r == 39 ? 4 - f : f;
+                json.append(f == 0 ? "" : ",").append(feature(n + ".feature", "f" + n, "S" + r));
+            }
+            reports.add(write("report" + r + ".json", json.append("]").toString()));
+        }
+
+        StringBuilder out = new StringBuilder();
+        new JSONReportMerger(executor).merge(reports, out);
+
+        List<Map> features = new Gson().fromJson(out.toString(), List.class);
+        assertEquals(5, features.size());
+        List<String> expected = new ArrayList<String>();
+        for (int r = 0; r < 40; r++) {
+            expected.add("S" + r);
+        }
+        for (int f = 0; f < 5; f++) {
+            assertEquals(f + ".feature", features.get(f).get("uri"));
+            assertEquals(expected, scenarioNames(features.get(f)));
+        }
+    }
+
+    @Test
+    public void refers_to_the_embeddings_in_the_store_without_loading_them() throws IOException {
+        EmbeddingStore store = new EmbeddingStore(folder.newFolder("embeddings"));
+        // The file isn't in the store, so loading it would fail
+        String step = "{\"keyword\": \"Given \", \"name\": \"a\", \"line\": 3, \"result\": {\"status\": \"passed\"}," +
+                " \"embeddings\": [{\"mime_type\": \"image/png\", \"file\": \"0123456789abcdef0123456789abcdef01234567\"}]}";
+        File report = write("report.json", "[{\"uri\": \"a.feature\", \"id\": \"a\", \"keyword\": \"Feature\", \"name\": \"a\", \"line\": 1," +
+                " \"elements\": [{\"type\": \"scenario\", \"keyword\": \"Scenario\", \"name\": \"A1\", \"line\": 2, \"steps\": [" + step + "]}]}]");
+
+        StringBuilder out = new StringBuilder();
+        new JSONReportMerger(executor, store).merge(Arrays.asList(report), out);
+
+        List<Map> features = new Gson().fromJson(out.toString(), List.class);
+        Map element = (Map) ((List) features.get(0).get("elements")).get(0);
+        Map embedding = (Map) ((List) ((Map) ((List) element.get("steps")).get(0)).get("embeddings")).get(0);
+        assertEquals("0123456789abcdef0123456789abcdef01234567", embedding.get("file"));
+        assertEquals("image/png", embedding.get("mime_type"));
+    }
+
+    private String feature(String uri, String id, String scenario) {
+        return "{\"uri\": \"" + uri + "\", \"id\": \"" + id + "\", \"keyword\": \"Feature\", \"name\": \"" + id + "\", \"line\": 1," +
+                " \"elements\": [{\"type\": \"scenario\", \"keyword\": \"Scenario\", \"name\": \"" + scenario + "\", \"line\": 2," +
+                " \"steps\": [{\"keyword\": \"Given \", \"name\": \"a\", \"line\": 3, \"result\": {\"status\": \"passed\"}}]}]}";
+    }
+
+    private List<String> scenarioNames(Map feature) {
+        List<String> names = new ArrayList<String>();
+        for (Object element : (List) feature.get("elements")) {
+            names.add((String) ((Map) element).get("name"));
+        }
+        return names;
+    }
+
+    private File write(String name, String json) throws IOException {
+        File file = folder.newFile(name);
+        FileOutputStream out = new FileOutputStream(file);
+        out.write(json.getBytes("UTF-8"));
+        out.close();
+        return file;
+    }
+}
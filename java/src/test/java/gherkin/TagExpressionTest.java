@@ -1,9 +1,13 @@
 package gherkin;
 
 import gherkin.formatter.model.Tag;
+import gherkin.formatter.model.TagSet;
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.List;
 
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
@@ -26,4 +30,19 @@ public class TagExpressionTest {
         TagExpression e = new TagExpression(Collections.singletonList("@foo"));
         assertFalse(e.evaluate(Collections.<Tag>emptyList()));
     }
+
+    @Test
+    public void evaluatesTagSetsWithTagsPastTheFirstWord() {
+        List<Tag> many = new ArrayList<Tag>();
+        for (int i = 0; i < 200; i++) {
+            many.add(new Tag("@many" + i, 1));
+        }
+        TagSet feature = TagSet.of(many.subList(0, 10));
+        TagSet scenario = TagSet.of(many.subList(150, 151));
+        TagExpression e = new TagExpression(Arrays.asList("@many150,@many3", "~@many199"));
+        assertTrue(e.evaluate(feature.union(scenario)));
+        assertTrue(e.evaluate(many.subList(0, 5)));
+        assertFalse(e.evaluate(many.subList(100, 200)));
+        assertFalse(e.evaluate(TagSet.EMPTY));
+    }
 }
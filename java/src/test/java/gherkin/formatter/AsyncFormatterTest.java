@@ -0,0 +1,88 @@
+package gherkin.formatter;
+
+import gherkin.formatter.model.Comment;
+import gherkin.formatter.model.Step;
+import org.junit.Test;
+import org.mockito.InOrder;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+public class AsyncFormatterTest {
+    @Test
+    public void passes_the_events_in_order_through_a_small_buffer() {
+        Formatter formatter = mock(Formatter.class);
+        AsyncFormatter async = new AsyncFormatter(formatter, 2, AsyncFormatter.BackPressure.BLOCK);
+        Step[] steps = new Step[100];
+        for (int i = 0; i < steps.length; i++) {
+            steps[i] = new Step(Collections.<Comment>emptyList(), "Given ", "step " + i, i, null, null);
+            async.step(steps[i]);
+        }
+        async.eof();
+        async.close();
+
+        InOrder inOrder = inOrder(formatter);
+        for (Step step : steps) {
+            inOrder.verify(formatter).step(step);
+        }
+        inOrder.verify(formatter).eof();
+        inOrder.verify(formatter).close();
+    }
+
+    @Test
+    public void rethrows_what_the_formatter_threw_and_still_closes_it() {
+        Formatter formatter = mock(Formatter.class);
+        doThrow(new RuntimeException("disk full")).when(formatter).uri(anyString());
+        AsyncFormatter async = new AsyncFormatter(formatter);
+        async.uri("a.feature");
+        try {
+            async.drain();
+            fail();
+        } catch (RuntimeException e) {
+            assertEquals("disk full", e.getCause().getMessage());
+        }
+        try {
+            async.close();
+            fail();
+        } catch (RuntimeException expected) {
+        }
+        verify(formatter).close();
+    }
+
+    @Test
+    public void fails_when_full_if_asked_to() throws InterruptedException {
+        final CountDownLatch blocked = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        Formatter formatter = mock(Formatter.class);
+        doAnswer(new Answer<Object>() {
+            public Object answer(InvocationOnMock invocation) throws Throwable {
+                blocked.countDown();
+                release.await();
+                return null;
+            }
+        }).when(formatter).uri(anyString());
+        AsyncFormatter async = new AsyncFormatter(formatter, 2, AsyncFormatter.BackPressure.FAIL);
+        async.uri("a.feature");
+        blocked.await();
+        // The slot of the event being handled is only freed after it.
+        async.eof();
+        try {
+            async.eof();
+            fail();
+        } catch (IllegalStateException expected) {
+        }
+        release.countDown();
+        async.close();
+    }
+}
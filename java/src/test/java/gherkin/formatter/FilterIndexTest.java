@@ -0,0 +1,98 @@
+package gherkin.formatter;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class FilterIndexTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void selects_the_files_with_matching_tags_names_and_lines() throws IOException {
+        File fast = write("fast.feature", "" +
+                "@fast\n" +
+                "Feature: Fast\n" +
+                "  Scenario: Quick\n" +
+                "    Given a\n");
+        File slow = write("slow.feature", "" +
+                "Feature: Slow\n" +
+                "  Scenario Outline: Long\n" +
+                "    Given <a>\n" +
+                "\n" +
+                "    @slow\n" +
+                "    Examples:\n" +
+                "      | a |\n" +
+                "      | 1 |\n");
+        List<File> features = Arrays.asList(fast, slow);
+        FilterIndex index = new FilterIndex();
+
+        assertEquals(Arrays.asList(fast), index.select(features, Arrays.asList("@fast")));
+        assertEquals(Arrays.asList(slow), index.select(features, Arrays.asList("@slow")));
+        assertEquals(Arrays.asList(slow), index.select(features, Arrays.asList("~@fast")));
+        assertEquals(Arrays.asList(fast), index.select(features, Arrays.asList(Pattern.compile("Quick"))));
+        assertEquals(Arrays.asList(slow), index.select(features, Arrays.asList(8)));
+        assertEquals(Collections.<File>emptyList(), index.select(features, Arrays.asList(1)));
+    }
+
+    @Test
+    public void reads_back_what_it_wrote_and_indexes_changed_files_again() throws IOException {
+        File feature = write("a.feature", "Feature: A\n  @wip\n  Scenario: S\n    Given a\n");
+        File indexFile = new File(folder.getRoot(), "index");
+        FilterIndex index = FilterIndex.read(indexFile);
+        assertTrue(index.update(feature));
+        index.write(indexFile);
+
+        index = FilterIndex.read(indexFile);
+        assertFalse(index.update(feature));
+        assertEquals(Arrays.asList(feature), index.select(Arrays.asList(feature), Arrays.asList("@wip")));
+
+        write("a.feature", "Feature: A\n  @done\n  Scenario: S\n    Given a\n");
+        assertTrue(index.update(feature));
+        assertEquals(Collections.<File>emptyList(), index.select(Arrays.asList(feature), Arrays.asList("@wip")));
+    }
+
+    @Test
+    public void writes_and_reads_names_longer_than_64_kb() throws IOException {
+        StringBuilder name = new StringBuilder();
+        while (name.length() < 70000) {
+            name.append("long name ");
+        }
+        name.append("needle");
+        File feature = write("long.feature", "Feature: A\n  Scenario: " + name + "\n    Given a\n");
+        File indexFile = new File(folder.getRoot(), "index");
+        FilterIndex index = new FilterIndex();
+        index.update(feature);
+        index.write(indexFile);
+
+        index = FilterIndex.read(indexFile);
+        assertFalse(index.update(feature));
+        assertEquals(Arrays.asList(feature), index.select(Arrays.asList(feature), Arrays.asList(Pattern.compile("needle"))));
+    }
+
+    @Test
+    public void always_selects_files_with_errors() throws IOException {
+        File broken = write("broken.feature", "Feature: A\n  Given a\n  Feature: B\n");
+        assertEquals(Arrays.asList(broken), new FilterIndex().select(Arrays.asList(broken), Arrays.asList("@none")));
+    }
+
+    private File write(String name, String gherkin) throws IOException {
+        File file = new File(folder.getRoot(), name);
+        FileOutputStream out = new FileOutputStream(file);
+        out.write(gherkin.getBytes("UTF-8"));
+        out.close();
+        return file;
+    }
+}
@@ -17,15 +17,22 @@ import gherkin.formatter.model.Scenario;
 import gherkin.formatter.model.Step;
 import gherkin.formatter.model.Tag;
 
+import java.io.File;
+import java.io.IOException;
 import java.io.PrintStream;
 import java.io.StringReader;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
 public class JSONFormatterTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
     @Test
     public void shouldNotCloseProvidedStreamInDone() {
         PrintStream out = mock(PrintStream.class);
@@ -50,6 +57,116 @@ public class JSONFormatterTest {
         checkJson(json);
     }
 
+    @Test
+    public void streaming_writes_the_same_json_as_buffering() {
+        String json = readResource("/gherkin/formatter/model/complicated.json");
+        StringBuilder buffered = new StringBuilder();
+        JSONFormatter bufferedFormatter = new JSONFormatter(buffered);
+        new JSONParser(bufferedFormatter, bufferedFormatter).parse(json);
+        bufferedFormatter.done();
+
+        StringBuilder streamed = new StringBuilder();
+        JSONFormatter streamingFormatter = new JSONFormatter(streamed, true);
+        new JSONParser(streamingFormatter, streamingFormatter).parse(json);
+        streamingFormatter.done();
+
+        assertEquals(buffered.toString(), streamed.toString());
+    }
+
+    @Test
+    public void streaming_writes_each_feature_at_its_eof() {
+        StringBuilder out = new StringBuilder();
+        JSONFormatter jsonFormatter = new JSONFormatter(out, true);
+        jsonFormatter.uri("uri");
+        jsonFormatter.feature(feature("Test Feature"));
+        assertEquals("", out.toString());
+        jsonFormatter.eof();
+        assertEquals("Test Feature", ((Map) new Gson().fromJson(out + "]", List.class).get(0)).get("name"));
+        jsonFormatter.done();
+        assertEquals(1, new Gson().fromJson(out.toString(), List.class).size());
+    }
+
+    @Test
+    public void streaming_writes_an_empty_array_without_features() {
+        StringBuilder out = new StringBuilder();
+        new JSONFormatter(out, true).done();
+        assertEquals("[]", out.toString());
+    }
+
+    @Test
+    public void writes_with_the_gson_of_a_subclass() {
+        String json = readResource("/gherkin/formatter/model/complicated.json");
+        StringBuilder out = new StringBuilder();
+        JSONFormatter formatter = new JSONFormatter(out) {
+            @Override
+            protected Gson gson() {
+                return new Gson();
+            }
+        };
+        new JSONParser(formatter, formatter).parse(json);
+        formatter.done();
+
+        assertEquals(-1, out.indexOf("\n"));
+        assertEquals(new Gson().fromJson(json, List.class), new Gson().fromJson(out.toString(), List.class));
+    }
+
+    @Test
+    public void parser_reads_the_keys_in_any_order_and_skips_unknown_ones() {
+        String json = "[{\"elements\": [{\"steps\": [{\"result\": {\"status\": \"passed\"}, \"name\": \"a\", \"keyword\": \"Given \", \"line\": 3}]," +
+                " \"type\": \"scenario\", \"name\": \"S\", \"keyword\": \"Scenario\", \"line\": 2, \"extra\": {\"x\": [1]}}]," +
+                " \"name\": \"F\", \"keyword\": \"Feature\", \"line\": 1, \"uri\": \"f.feature\"}]";
+        StringBuilder out = new StringBuilder();
+        JSONFormatter formatter = new JSONFormatter(out);
+        new JSONParser(formatter, formatter).parse(json);
+        formatter.done();
+
+        Map feature = (Map) new Gson().fromJson(out.toString(), List.class).get(0);
+        assertEquals("f.feature", feature.get("uri"));
+        Map scenario = (Map) ((List) feature.get("elements")).get(0);
+        assertEquals("S", scenario.get("name"));
+        assertEquals(null, scenario.get("extra"));
+        Map step = (Map) ((List) scenario.get("steps")).get(0);
+        assertEquals("passed", ((Map) step.get("result")).get("status"));
+    }
+
+    @Test
+    public void keeps_embeddings_in_the_store_and_reads_them_back() throws IOException {
+        File directory = folder.newFolder("embeddings");
+        EmbeddingStore store = new EmbeddingStore(directory);
+        StringBuilder out = new StringBuilder();
+        JSONFormatter jsonFormatter = new JSONFormatter(out, false, store);
+        jsonFormatter.uri(uri());
+        jsonFormatter.feature(feature("Test Feature"));
+        jsonFormatter.scenario(scenario("Test Scenario"));
+        jsonFormatter.step(step("Given", "Step 1"));
+        jsonFormatter.embedding("mime-type", new byte[] {1, 2, 3});
+        jsonFormatter.embedding("mime-type", new byte[] {1, 2, 3});
+        jsonFormatter.done();
+
+        assertEquals(1, directory.list().length);
+        assertEquals(-1, out.indexOf("\"data\""));
+
+        StringBuilder inlined = new StringBuilder();
+        JSONFormatter inlining = new JSONFormatter(inlined);
+        new JSONParser(inlining, inlining, store).parse(out.toString());
+        inlining.done();
+        Map feature = (Map) new Gson().fromJson(inlined.toString(), List.class).get(0);
+        Map step = (Map) ((List) ((Map) ((List) feature.get("elements")).get(0)).get("steps")).get(0);
+        Map embedding = (Map) ((List) step.get("embeddings")).get(1);
+        assertEquals("AQID", embedding.get("data"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void refuses_embeddings_in_files_the_store_could_not_have_written() throws IOException {
+        File directory = folder.newFolder("embeddings");
+        String json = "[{\"uri\": \"a.feature\", \"keyword\": \"Feature\", \"name\": \"a\", \"line\": 1," +
+                " \"elements\": [{\"type\": \"scenario\", \"keyword\": \"Scenario\", \"name\": \"s\", \"line\": 2," +
+                " \"steps\": [{\"keyword\": \"Given \", \"name\": \"a\", \"line\": 3," +
+                " \"embeddings\": [{\"mime_type\": \"text/plain\", \"file\": \"../secret\"}]}]}]}]";
+        JSONFormatter inlining = new JSONFormatter(new StringBuilder());
+        new JSONParser(inlining, inlining, new EmbeddingStore(directory)).parse(json);
+    }
+
     private void checkJson(String json) {
         Appendable io = new StringBuilder();
         JSONPrettyFormatter f = new JSONPrettyFormatter(io);
@@ -0,0 +1,45 @@
+package gherkin.formatter;
+
+import gherkin.formatter.model.Comment;
+import gherkin.formatter.model.ExamplesTableRow;
+import gherkin.formatter.model.Range;
+import gherkin.formatter.model.Tag;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class LineFilterTest {
+    private final LineFilter filter = new LineFilter(Arrays.asList(30, 12, 30, 7));
+
+    @Test
+    public void evaluates_to_true_when_a_range_includes_a_line() {
+        assertTrue(evaluate(new Range(1, 3), new Range(10, 12)));
+        assertTrue(evaluate(new Range(30, 30)));
+        assertFalse(evaluate(new Range(8, 11), new Range(13, 29), new Range(31, 40)));
+        assertFalse(evaluate(null, new Range(1, 6)));
+    }
+
+    @Test
+    public void keeps_the_header_and_the_rows_on_the_lines_once() {
+        List<ExamplesTableRow> rows = new ArrayList<ExamplesTableRow>();
+        for (int line = 10; line <= 31; line++) {
+            rows.add(new ExamplesTableRow(Collections.<Comment>emptyList(), Arrays.asList("a"), line, "id" + line));
+        }
+        List<ExamplesTableRow> filtered = filter.filterTableBodyRows(rows);
+        assertEquals(3, filtered.size());
+        assertEquals(10, filtered.get(0).getLine().intValue());
+        assertEquals(12, filtered.get(1).getLine().intValue());
+        assertEquals(30, filtered.get(2).getLine().intValue());
+    }
+
+    private boolean evaluate(Range... ranges) {
+        return filter.evaluate(Collections.<Tag>emptyList(), Collections.<String>emptyList(), Arrays.asList(ranges));
+    }
+}
@@ -40,6 +40,20 @@ public class MappableTest {
         public final Class a_class = AnotherMappable.class;
     }
 
+    public static class SubMappable extends AnotherMappable {
+        public final String a_sub_string = "6";
+    }
+
+    @Test
+    public void should_map_the_fields_of_each_class_with_those_of_its_superclasses() {
+        assertEquals(2, new AnotherMappable().toMap().size());
+        Map<String, Object> map = new SubMappable().toMap();
+        assertEquals(3, map.size());
+        assertEquals("6", map.get("a_sub_string"));
+        assertEquals(4, map.get("another_int"));
+        assertEquals(2, new AnotherMappable().toMap().size());
+    }
+
     @Test
     public void should_only_include_primitives_strings_mappables_and_collections_of_mappable() throws MalformedURLException {
         TestMappable tm = new TestMappable();
@@ -0,0 +1,73 @@
+package gherkin.formatter;
+
+import gherkin.formatter.NiceAppendable.FlushPolicy;
+import org.junit.Test;
+
+import java.io.StringWriter;
+
+import static org.junit.Assert.assertEquals;
+
+public class NiceAppendableTest {
+    @Test
+    public void flushes_after_every_append_by_default() {
+        CountingWriter writer = new CountingWriter();
+        NiceAppendable out = new NiceAppendable(writer);
+        out.append("a").println("b");
+        assertEquals("ab\n", writer.toString());
+        assertEquals(2, writer.flushes);
+    }
+
+    @Test
+    public void buffers_until_the_point_of_its_policy() {
+        CountingWriter writer = new CountingWriter();
+        NiceAppendable out = new NiceAppendable(writer, FlushPolicy.FEATURE);
+        out.println("Feature: F");
+        out.println("  Scenario: S");
+        out.flush(FlushPolicy.SCENARIO);
+        assertEquals("", writer.toString());
+        out.flush(FlushPolicy.FEATURE);
+        assertEquals("Feature: F\n  Scenario: S\n", writer.toString());
+        assertEquals(1, writer.flushes);
+    }
+
+    @Test
+    public void flushes_each_line_if_asked_to() {
+        CountingWriter writer = new CountingWriter();
+        NiceAppendable out = new NiceAppendable(writer, FlushPolicy.LINE);
+        out.append("a").append("b");
+        assertEquals("", writer.toString());
+        out.println();
+        assertEquals("ab\n", writer.toString());
+        assertEquals(1, writer.flushes);
+    }
+
+    @Test
+    public void flushes_appended_text_that_ends_a_line_if_asked_to() {
+        CountingWriter writer = new CountingWriter();
+        NiceAppendable out = new NiceAppendable(writer, FlushPolicy.LINE);
+        out.append("a\nb");
+        assertEquals("a\nb", writer.toString());
+        assertEquals(1, writer.flushes);
+        out.append("-c\n-", 1, 3);
+        assertEquals("a\nbc\n", writer.toString());
+        assertEquals(2, writer.flushes);
+    }
+
+    @Test
+    public void close_flushes_whatever_the_policy() {
+        CountingWriter writer = new CountingWriter();
+        NiceAppendable out = new NiceAppendable(writer, FlushPolicy.DONE);
+        out.println("a");
+        out.close();
+        assertEquals("a\n", writer.toString());
+    }
+
+    private static class CountingWriter extends StringWriter {
+        private int flushes;
+
+        @Override
+        public void flush() {
+            flushes++;
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package gherkin.formatter;
+
+import gherkin.formatter.model.Range;
+import gherkin.formatter.model.Tag;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class PatternFilterTest {
+    @Test
+    public void finds_any_of_many_plain_text_patterns() {
+        List<Pattern> patterns = new ArrayList<Pattern>();
+        for (String text : Arrays.asList("she", "he", "hers", "his", "a.b")) {
+            patterns.add(Pattern.compile(text.equals("a.b") ? Pattern.quote(text) : text));
+        }
+        PatternFilter filter = new PatternFilter(patterns);
+        assertTrue(evaluate(filter, "ushers"));
+        assertTrue(evaluate(filter, "this"));
+        assertTrue(evaluate(filter, null, "1 a.b 2"));
+        assertFalse(evaluate(filter, "axb", "hi", "sh", null));
+    }
+
+    @Test
+    public void finds_regular_expressions_with_groups_flags_and_back_references() {
+        PatternFilter filter = new PatternFilter(Arrays.asList(
+                Pattern.compile("^(a)\\1$"),
+                Pattern.compile("b(c)"),
+                Pattern.compile("(?i)LOUD"),
+                Pattern.compile("quiet", Pattern.CASE_INSENSITIVE)));
+        assertTrue(evaluate(filter, "aa"));
+        assertTrue(evaluate(filter, "abc"));
+        assertTrue(evaluate(filter, "so loud"));
+        assertTrue(evaluate(filter, "QUIET"));
+        assertFalse(evaluate(filter, "ac", "ab", "a"));
+    }
+
+    private boolean evaluate(PatternFilter filter, String... names) {
+        return filter.evaluate(Collections.<Tag>emptyList(), Arrays.asList(names), Collections.<Range>emptyList());
+    }
+}
@@ -56,6 +56,14 @@ public class PrettyFormatterTest {
         f.result(new Result("failed", 55L, "Something\nbad\nhappened"));
     }
     
+    @Test
+    public void escapes_backslashes_pipes_and_newlines_in_table_cells() {
+        StringBuilder out = new StringBuilder();
+        PrettyFormatter f = new PrettyFormatter(out, true, false);
+        f.table(asList(new DataTableRow(NO_COMMENTS, asList("a\\b", "c\\|d", "e|f", "g\nh"), 1, Row.DiffType.NONE)));
+        assertEquals("      | a\\\\b | c\\\\|d | e\\|f | g\\nh |\n", out.toString());
+    }
+
     @Test
     public void shouldNotCloseProvidedStreamInDone() {
         PrintStream out = mock(PrintStream.class);
@@ -0,0 +1,66 @@
+package gherkin.formatter;
+
+import gherkin.formatter.model.Feature;
+import gherkin.formatter.model.Result;
+import gherkin.formatter.model.Scenario;
+import gherkin.formatter.model.Step;
+import gherkin.parser.Parser;
+import org.junit.Test;
+import org.mockito.InOrder;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.withSettings;
+
+public class TeeFormatterTest {
+    @Test
+    public void sends_one_parse_to_every_formatter() {
+        Formatter first = mock(Formatter.class);
+        Formatter second = mock(Formatter.class);
+        TeeFormatter tee = new TeeFormatter(Arrays.asList(first, second), true);
+        new Parser(tee).parse("Feature: F\n  Scenario: S\n    Given a\n", "f.feature", 0);
+        tee.close();
+
+        for (Formatter formatter : Arrays.asList(first, second)) {
+            InOrder inOrder = inOrder(formatter);
+            inOrder.verify(formatter).uri("f.feature");
+            inOrder.verify(formatter).feature(any(Feature.class));
+            inOrder.verify(formatter).scenario(any(Scenario.class));
+            inOrder.verify(formatter).step(any(Step.class));
+            inOrder.verify(formatter).eof();
+            inOrder.verify(formatter).close();
+        }
+    }
+
+    @Test
+    public void sends_results_to_reporters_only() {
+        Formatter formatter = mock(Formatter.class);
+        Formatter reporter = mock(Formatter.class, withSettings().extraInterfaces(Reporter.class));
+        Result result = new Result(Result.PASSED, 1L, null);
+        new TeeFormatter(Arrays.asList(formatter, reporter)).result(result);
+
+        verify((Reporter) reporter).result(result);
+    }
+
+    @Test
+    public void closes_every_formatter_and_rethrows_the_first_failure() {
+        RuntimeException failure = new RuntimeException("first");
+        Formatter first = mock(Formatter.class);
+        Formatter second = mock(Formatter.class);
+        doThrow(failure).when(first).close();
+        try {
+            new TeeFormatter(Arrays.asList(first, second)).close();
+            fail();
+        } catch (RuntimeException e) {
+            assertSame(failure, e);
+        }
+        verify(second).close();
+    }
+}
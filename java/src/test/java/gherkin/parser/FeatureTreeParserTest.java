@@ -0,0 +1,65 @@
+package gherkin.parser;
+
+import gherkin.formatter.Formatter;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.InOrder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+
+public class FeatureTreeParserTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(4);
+
+    @After
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    @Test
+    public void replays_files_in_walk_order_and_collects_errors() throws IOException {
+        File dir = folder.newFolder("features");
+        File a = write(new File(dir, "a.feature"), "Feature: A\n  Scenario: S\n    Given a\n");
+        File b = write(new File(dir, "b.feature"), "Feature: B\n  Scenario: S\n    Given b\n  oops\n");
+        File c = write(new File(dir, "c.feature"), "Feature: C\n");
+        write(new File(dir, "notes.txt"), "not a feature");
+
+        Formatter formatter = mock(Formatter.class);
+        FeatureTreeParser.Summary summary = new FeatureTreeParser(formatter, executor, 1).parse(dir);
+
+        assertEquals(3, summary.getFiles());
+        assertEquals(1, summary.getErrors().size());
+        assertEquals(b, summary.getErrors().get(0).getFile());
+
+        InOrder inOrder = inOrder(formatter);
+        for (File file : dir.listFiles()) {
+            if (file.equals(a) || file.equals(c)) {
+                inOrder.verify(formatter).uri(file.getPath());
+                inOrder.verify(formatter).eof();
+            } else if (file.equals(b)) {
+                inOrder.verify(formatter).uri(file.getPath());
+                inOrder.verify(formatter).feature(any(gherkin.formatter.model.Feature.class));
+            }
+        }
+    }
+
+    private File write(File file, String gherkin) throws IOException {
+        FileOutputStream out = new FileOutputStream(file);
+        out.write(gherkin.getBytes("UTF-8"));
+        out.close();
+        return file;
+    }
+}
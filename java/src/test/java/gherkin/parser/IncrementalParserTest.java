@@ -0,0 +1,73 @@
+package gherkin.parser;
+
+import gherkin.formatter.model.BasicStatement;
+import gherkin.formatter.model.Scenario;
+import gherkin.formatter.model.Step;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+public class IncrementalParserTest {
+    private static final String FEATURE = "" +
+            "Feature: F\n" +
+            "  Scenario: One\n" +
+            "    Given a\n" +
+            "\n" +
+            "  Scenario: Two\n" +
+            "    Given b\n" +
+            "\n" +
+            "  Scenario: Three\n" +
+            "    Given c\n";
+
+    @Test
+    public void relexes_only_the_edited_scenario() {
+        IncrementalParser parser = new IncrementalParser("f.feature");
+        parser.parse(FEATURE);
+        BasicStatement first = parser.getStatements().get(1);
+
+        IncrementalParser.Delta delta = parser.edit(FEATURE.indexOf("Given b") + 6, 1, "bee");
+
+        assertEquals(2, delta.getRemoved().size());
+        assertEquals(2, delta.getAdded().size());
+        assertEquals("Two", delta.getAdded().get(0).getName());
+        assertEquals("bee", delta.getAdded().get(1).getName());
+        assertEquals(0, delta.getLineDelta());
+        assertSame(first, parser.getStatements().get(1));
+    }
+
+    @Test
+    public void shifts_the_lines_after_an_inserted_step() {
+        IncrementalParser parser = new IncrementalParser("f.feature");
+        parser.parse(FEATURE);
+
+        IncrementalParser.Delta delta = parser.edit(FEATURE.indexOf("\n\n  Scenario: Three") + 1, 0, "    And d\n");
+
+        assertEquals(1, delta.getLineDelta());
+        List<BasicStatement> statements = parser.getStatements();
+        assertEquals("d", statements.get(5).getName());
+        assertEquals(7, ((Step) statements.get(5)).getLine().intValue());
+        assertEquals("f;three", ((Scenario) statements.get(6)).getId());
+        assertEquals(9, statements.get(6).getLine().intValue());
+    }
+
+    @Test
+    public void keeps_the_edit_after_a_parse_error() {
+        IncrementalParser parser = new IncrementalParser("f.feature");
+        parser.parse(FEATURE);
+        int offset = FEATURE.indexOf("    Given b");
+        try {
+            parser.edit(offset, 0, "Feature: G\n");
+            fail();
+        } catch (ParseError expected) {
+        }
+        assertEquals(7, parser.getStatements().size());
+
+        parser.edit(offset, "Feature: G\n".length(), "");
+        assertEquals(FEATURE, parser.getSource());
+        assertEquals(7, parser.getStatements().size());
+    }
+}